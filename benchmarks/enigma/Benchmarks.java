@@ -0,0 +1,432 @@
+package enigma;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/** Benchmarks of the encryption hot paths. Each benchmark is run for
+ *  WARMUP_ITERATIONS iterations of ITERATION_MILLIS each, whose results
+ *  are discarded, and then for MEASURED_ITERATIONS more, whose rates of
+ *  operations per second are averaged. Results are written one per
+ *  line as tab-separated name, parameter, score, error (half the width
+ *  of a 95% confidence interval) and unit, so that two result files can
+ *  be compared.
+ *
+ *  Usage: java enigma.Benchmarks [-q] [-o FILE] [NAME...]
+ *         java enigma.Benchmarks --compare BASELINE CURRENT
+ *  -q runs shorter and fewer iterations; NAMEs select benchmarks whose
+ *  names start with them.
+ *  @author Ria Vora
+ */
+public final class Benchmarks {
+
+    /** Runs the benchmarks or comparison given by ARGS. */
+    public static void main(String... args) throws IOException {
+        if (args.length == 3 && args[0].equals("--compare")) {
+            compare(readResults(args[1]), readResults(args[2]),
+                    System.out);
+            return;
+        }
+        Benchmarks benchmarks = new Benchmarks();
+        String output = null;
+        ArrayList<String> names = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-q")) {
+                benchmarks._quick = true;
+            } else if (args[i].equals("-o") && i + 1 < args.length) {
+                output = args[i + 1];
+                i += 1;
+            } else {
+                names.add(args[i]);
+            }
+        }
+        ArrayList<String> results = benchmarks.runAll(names);
+        if (output != null) {
+            Files.write(Path.of(output), results);
+        }
+    }
+
+    /** An operation being measured, returning a value that depends on
+     *  its work so that the work cannot be skipped. */
+    private interface Op {
+        /** Performs the operation once. */
+        long run() throws Exception;
+    }
+
+    /** Runs the benchmarks whose names start with one of NAMES, or all
+     *  of them if NAMES is empty, printing each result as it is found.
+     *  Return the lines of the results file. */
+    private ArrayList<String> runAll(List<String> names) throws IOException {
+        _names = names;
+        _results = new ArrayList<>();
+        _results.add(String.format("# java %s, %s %s, %d processors%s",
+                System.getProperty("java.version"),
+                System.getProperty("os.name"), System.getProperty("os.arch"),
+                Runtime.getRuntime().availableProcessors(),
+                _quick ? ", quick" : ""));
+        System.out.println(_results.get(0));
+
+        for (int size : new int[] {26, 256, 1024}) {
+            Permutation perm = randomPermutation(size);
+            bench("Permutation.permute", size, "ops/s", () -> {
+                long sum = 0;
+                for (int p = 0; p < size; p++) {
+                    sum += perm.permute(p);
+                }
+                return sum;
+            }, size);
+            bench("Permutation.invert", size, "ops/s", () -> {
+                long sum = 0;
+                for (int p = 0; p < size; p++) {
+                    sum += perm.invert(p);
+                }
+                return sum;
+            }, size);
+        }
+
+        for (int size : new int[] {26, 256}) {
+            Rotor rotor = new MovingRotor("R", randomPermutation(size), "");
+            if (size <= Rotor.TABLE_LIMIT) {
+                rotor.setTables();
+            }
+            bench("Rotor.convertForward", size, "ops/s", () -> {
+                long sum = 0;
+                for (int posn = 0; posn < size; posn++) {
+                    rotor.set(posn);
+                    for (int p = 0; p < size; p++) {
+                        sum += rotor.convertForward(p);
+                    }
+                }
+                return sum;
+            }, size * size);
+            bench("Rotor.convertBackward", size, "ops/s", () -> {
+                long sum = 0;
+                for (int posn = 0; posn < size; posn++) {
+                    rotor.set(posn);
+                    for (int p = 0; p < size; p++) {
+                        sum += rotor.convertBackward(p);
+                    }
+                }
+                return sum;
+            }, size * size);
+        }
+
+        for (int slots : new int[] {3, 5, 10}) {
+            Machine machine = randomMachine(slots);
+            bench("Machine.convert(int)", slots, "chars/s", () -> {
+                long sum = 0;
+                for (int i = 0; i < BATCH; i++) {
+                    sum += machine.convert(i % 26);
+                }
+                return sum;
+            }, BATCH);
+        }
+
+        for (int slots : new int[] {5, 50, 500}) {
+            for (String stack : new String[] {"linear", "tree"}) {
+                Machine machine = randomMachine(slots);
+                machine.setRotorTreeMinimum(stack.equals("tree")
+                        ? 0 : Integer.MAX_VALUE);
+                bench("Machine.convert(int)", slots + "/" + stack,
+                    "chars/s", () -> {
+                        long sum = 0;
+                        for (int i = 0; i < BATCH; i++) {
+                            sum += machine.convert(i % 26);
+                        }
+                        return sum;
+                    }, BATCH);
+            }
+        }
+
+        for (int kb : new int[] {1, 100, 10_000, 100_000}) {
+            if (_quick && kb > 10_000) {
+                continue;
+            }
+            Machine machine = randomMachine(5);
+            String msg = randomMessage(kb * 1024);
+            bench("Machine.convert(String)", kb + "KB", "chars/s",
+                () -> machine.convert(msg).length(), msg.length());
+        }
+
+        byte[] config = NAVAL.getBytes(Charset.defaultCharset());
+        bench("Main.readConfig", "naval", "ops/s",
+            () -> Main.readConfig(config).numRotors(), 1);
+
+        benchProcess();
+        return _results;
+    }
+
+    /** Benchmarks Main.process from a configuration file, through a
+     *  memory-mapped input file of about a megabyte, to an output
+     *  file. */
+    private void benchProcess() throws IOException {
+        if (!selected("Main.process")) {
+            return;
+        }
+        File conf = File.createTempFile("bench", ".conf");
+        File in = File.createTempFile("bench", ".in");
+        File out = File.createTempFile("bench", ".out");
+        conf.deleteOnExit();
+        in.deleteOnExit();
+        out.deleteOnExit();
+        Files.writeString(conf.toPath(), NAVAL);
+        StringBuilder input = new StringBuilder();
+        Random random = new Random(SEED);
+        for (int s = 0; s < 100; s++) {
+            input.append("* B Beta III IV I ").append(randomMessage(4))
+                .append(" (AQ) (EP)\n");
+            for (int line = 0; line < 200; line++) {
+                input.append(randomMessage(10 + random.nextInt(80)))
+                    .append('\n');
+            }
+        }
+        Files.writeString(in.toPath(), input);
+        String[] args = {conf.getPath(), in.getPath(), out.getPath()};
+        bench("Main.process", "1MB", "chars/s", () -> {
+            Main main = new Main(args);
+            try {
+                main.process();
+            } finally {
+                main.close();
+            }
+            return out.length();
+        }, input.length());
+    }
+
+    /** Measures OP, which does WORK units of UNIT each time, as the
+     *  benchmark NAME with PARAM, if selected. */
+    private void bench(String name, Object param, String unit, Op op,
+                       long work) {
+        if (!selected(name)) {
+            return;
+        }
+        try {
+            int warmups = _quick ? 1 : WARMUP_ITERATIONS;
+            int measured = _quick ? 3 : MEASURED_ITERATIONS;
+            long millis = _quick ? ITERATION_MILLIS / 4 : ITERATION_MILLIS;
+            for (int i = 0; i < warmups; i++) {
+                iteration(op, millis);
+            }
+            double[] rates = new double[measured];
+            for (int i = 0; i < measured; i++) {
+                rates[i] = iteration(op, millis) * work;
+            }
+            double mean = 0;
+            for (double rate : rates) {
+                mean += rate / measured;
+            }
+            double variance = 0;
+            for (double rate : rates) {
+                variance += (rate - mean) * (rate - mean) / (measured - 1);
+            }
+            double error = T_95[measured - 1]
+                * Math.sqrt(variance / measured);
+            String line = String.format(Locale.ROOT, "%s\t%s\t%.4g\t%.2g\t%s",
+                    name, param, mean, error, unit);
+            System.out.println(line);
+            _results.add(line);
+        } catch (Exception excp) {
+            System.out.printf("%s\t%s\tfailed: %s%n", name, param, excp);
+        }
+    }
+
+    /** Runs OP repeatedly for about MILLIS milliseconds, returning the
+     *  number of runs per second. */
+    private double iteration(Op op, long millis) throws Exception {
+        long start = System.nanoTime();
+        long end = start + millis * 1_000_000;
+        long runs = 0;
+        long now;
+        do {
+            _sink += op.run();
+            runs += 1;
+            now = System.nanoTime();
+        } while (now < end);
+        return runs * 1e9 / (now - start);
+    }
+
+    /** Return true iff benchmark NAME was selected. */
+    private boolean selected(String name) {
+        if (_names.isEmpty()) {
+            return true;
+        }
+        for (String prefix : _names) {
+            if (name.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Return a random permutation of an alphabet of SIZE characters. */
+    private static Permutation randomPermutation(int size) {
+        char[] chars = new char[size];
+        for (int i = 0; i < size; i++) {
+            chars[i] = size <= 26 ? (char) ('A' + i) : (char) (0x100 + i);
+        }
+        return new Permutation(randomTable(size, SEED + size),
+                new Alphabet(new String(chars)));
+    }
+
+    /** Return a random arrangement of 0 .. SIZE - 1 made from SEED. */
+    private static int[] randomTable(int size, long seed) {
+        Random random = new Random(seed);
+        int[] table = new int[size];
+        for (int i = 0; i < size; i++) {
+            int j = random.nextInt(i + 1);
+            table[i] = table[j];
+            table[j] = i;
+        }
+        return table;
+    }
+
+    /** Return a machine of SLOTS slots with random rotors on the 26
+     *  letters, all but the reflector and one fixed rotor moving, set up
+     *  at random with a plugboard of two cycles. */
+    private static Machine randomMachine(int slots) {
+        Alphabet alpha = new Alphabet("ABCDEFGHIJKLMNOPQRSTUVWXYZ");
+        Random random = new Random(SEED + slots);
+        ArrayList<Rotor> rotors = new ArrayList<>();
+        int[] reflector = new int[26];
+        int[] order = randomTable(26, SEED - slots);
+        for (int i = 0; i < 26; i += 2) {
+            reflector[order[i]] = order[i + 1];
+            reflector[order[i + 1]] = order[i];
+        }
+        rotors.add(new Reflector("B", new Permutation(reflector, alpha)));
+        String[] names = new String[slots];
+        names[0] = "B";
+        for (int i = 1; i < slots; i++) {
+            Permutation perm = new Permutation(
+                    randomTable(26, random.nextLong()), alpha);
+            names[i] = "R" + i;
+            if (i == 1) {
+                rotors.add(new FixedRotor(names[i], perm));
+            } else {
+                String notch = String.valueOf(
+                        (char) ('A' + random.nextInt(26)));
+                rotors.add(new MovingRotor(names[i], perm, notch));
+            }
+        }
+        Machine machine = new Machine(alpha, slots, slots - 2, rotors);
+        machine.insertRotors(names);
+        StringBuilder setting = new StringBuilder();
+        for (int i = 1; i < slots; i++) {
+            setting.append((char) ('A' + random.nextInt(26)));
+        }
+        machine.setRotors(setting.toString());
+        machine.setPlugboard(new Permutation("(AQ) (EP)", alpha));
+        return machine;
+    }
+
+    /** Return a message of LEN random letters. */
+    private static String randomMessage(int len) {
+        Random random = new Random(SEED + len);
+        char[] chars = new char[len];
+        for (int i = 0; i < len; i++) {
+            chars[i] = (char) ('A' + random.nextInt(26));
+        }
+        return new String(chars);
+    }
+
+    /** Return the results in the results file named NAME, by name and
+     *  parameter. */
+    private static LinkedHashMap<String, double[]> readResults(String name)
+        throws IOException {
+        LinkedHashMap<String, double[]> results = new LinkedHashMap<>();
+        for (String line : Files.readAllLines(Path.of(name))) {
+            String[] fields = line.split("\t");
+            if (line.startsWith("#") || fields.length != 5) {
+                continue;
+            }
+            results.put(fields[0] + "\t" + fields[1] + "\t" + fields[4],
+                new double[] {Double.parseDouble(fields[2]),
+                              Double.parseDouble(fields[3])});
+        }
+        return results;
+    }
+
+    /** Prints to OUT a report comparing CURRENT with BASELINE: for each
+     *  benchmark in both, the two scores, the change, and whether it is
+     *  larger than their errors. */
+    private static void compare(LinkedHashMap<String, double[]> baseline,
+                                LinkedHashMap<String, double[]> current,
+                                PrintStream out) {
+        out.printf("%-26s %-8s %12s %12s %8s%n", "benchmark", "param",
+                "baseline", "current", "change");
+        for (String key : baseline.keySet()) {
+            double[] base = baseline.get(key);
+            double[] now = current.get(key);
+            if (now == null) {
+                continue;
+            }
+            String[] parts = key.split("\t");
+            double change = (now[0] - base[0]) / base[0] * 100;
+            boolean significant =
+                Math.abs(now[0] - base[0]) > base[1] + now[1];
+            out.printf(Locale.ROOT, "%-26s %-8s %12.4g %12.4g %+7.1f%% %s%n",
+                    parts[0], parts[1], base[0], now[0], change,
+                    significant ? (change > 0 ? "faster" : "SLOWER") : "");
+        }
+    }
+
+    /** The naval configuration of testing/correct/default.conf. */
+    private static final String NAVAL = "ABCDEFGHIJKLMNOPQRSTUVWXYZ\n"
+        + " 5 3\n"
+        + " I MQ      (AELTPHQXRU) (BKNW) (CMOY) (DFG) (IV) (JZ) (S)\n"
+        + " II ME     (FIXVYOMW) (CDKLHUP) (ESZ) (BJ) (GR) (NT) (A) (Q)\n"
+        + " III MV    (ABDHPEJT) (CFLVMZOYQIRWUKXSG) (N)\n"
+        + " IV MJ     (AEPLIYWCOXMRFZBSTGJQNH) (DV) (KU)\n"
+        + " V MZ      (AVOLDRWFIUQ)(BZKSMNHYC) (EGTJPX)\n"
+        + " VI MZM    (AJQDVLEOZWIYTS) (CGMNHFUX) (BPRK)\n"
+        + " VII MZM   (ANOUPFRIMBZTLWKSVEGCJYDHXQ)\n"
+        + " VIII MZM  (AFLSETWUNDHOZVICQ) (BKJ) (GXY) (MPR)\n"
+        + " Beta N    (ALBEVFCYODJWUGNMQTZSKPR) (HIX)\n"
+        + " Gamma N   (AFNIRLBSQWVXGUZDKMTPCOYJHE)\n"
+        + " B R       (AE) (BN) (CK) (DQ) (FU) (GY) (HW) (IJ) (LO) (MP)\n"
+        + "           (RX) (SZ) (TV)\n"
+        + " C R       (AR) (BD) (CO) (EJ) (FN) (GT) (HK) (IV) (LM) (PW)\n"
+        + "           (QZ) (SX) (UY)\n";
+
+    /** Number of characters converted by one operation of the
+     *  Machine.convert(int) benchmarks. */
+    private static final int BATCH = 1024;
+
+    /** Number of iterations run before measuring. */
+    private static final int WARMUP_ITERATIONS = 3;
+
+    /** Number of iterations measured. */
+    private static final int MEASURED_ITERATIONS = 5;
+
+    /** Length of an iteration in milliseconds. */
+    private static final long ITERATION_MILLIS = 1000;
+
+    /** Two-sided 95% Student t values by degrees of freedom, from 0. */
+    private static final double[] T_95 = {
+        Double.NaN, 12.706, 4.303, 3.182, 2.776, 2.571, 2.447, 2.365
+    };
+
+    /** Seed of all random data, so that every run measures the same
+     *  work. */
+    private static final long SEED = 61;
+
+    /** Whether to run short and few iterations. */
+    private boolean _quick;
+
+    /** Prefixes of the names of the benchmarks to run. */
+    private List<String> _names;
+
+    /** The lines of the results file. */
+    private ArrayList<String> _results;
+
+    /** Sum of the results of all operations, so that none is skipped. */
+    private long _sink;
+}
@@ -1,6 +1,6 @@
 package enigma;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 
 /** An alphabet of encodable characters.  Provides a mapping from characters
  *  to and from indices into the alphabet.
@@ -20,28 +20,80 @@ class Alphabet {
      *  into alphabet are not *, (, or ).
      *  @param chars is the chars passed into alphabet*/
     private void checkChars(String chars) {
-        if (!chars.matches("[^\\*\\(\\)]+")) {
+        boolean allowed = !chars.isEmpty();
+        for (int i = 0; i < chars.length(); i++) {
+            char c = chars.charAt(i);
+            allowed &= c != '*' && c != '(' && c != ')';
+        }
+        if (!allowed) {
             throw new EnigmaException("You cannot have a"
                     + "*, (, ) in your alphabet! The alphabet "
                     + chars + " is not allowed.");
         }
     }
 
-    /** A helper method that sets the Arraylist LETTERS to
-     * be the contents of charsArray while checking for
-     * duplicates.
+    /** A helper method that sets the array LETTERS to be
+     * CHARSARRAY and builds the index table for it while checking
+     * for duplicates.
      * @param charsArray is the array of chars
      * made from chars passed into alphabet*/
     private void setChars(char[] charsArray) {
-        _letters = new ArrayList<Character>();
-        for (char c: charsArray) {
-            if (_letters.contains(c)) {
+        _letters = charsArray;
+        char min = Character.MAX_VALUE, max = Character.MIN_VALUE;
+        for (char c : charsArray) {
+            min = (char) Math.min(min, c);
+            max = (char) Math.max(max, c);
+        }
+        if (max - min < DENSE_LIMIT) {
+            _offset = min;
+            _index = new int[max - min + 1];
+        } else {
+            int capacity = Integer.highestOneBit(charsArray.length) << 2;
+            _keys = new char[capacity];
+            _index = new int[capacity];
+        }
+        Arrays.fill(_index, -1);
+        for (int i = 0; i < charsArray.length; i++) {
+            char c = charsArray[i];
+            int slot = slot(c);
+            if (_index[slot] != -1) {
                 throw new EnigmaException("You cannot create an"
                         + "Alphabet with duplicates in it."
                         + " Your duplicate letter is " + c);
             }
-            _letters.add(c);
+            if (_keys != null) {
+                _keys[slot] = c;
+            }
+            _index[slot] = i;
+        }
+    }
+
+    /** Returns the position of CH in _index, or -1 if CH falls outside
+     *  of the dense table. In the sparse table this is the slot holding
+     *  CH, or the empty slot where it would go. */
+    private int slot(char ch) {
+        if (_keys == null) {
+            int slot = ch - _offset;
+            if (slot < 0 || slot >= _index.length) {
+                return -1;
+            }
+            return slot;
+        }
+        int mask = _keys.length - 1;
+        int slot = (ch * HASH_MULTIPLIER >>> HASH_SHIFT) & mask;
+        while (_index[slot] != -1 && _keys[slot] != ch) {
+            slot = (slot + 1) & mask;
         }
+        return slot;
+    }
+
+    /** Returns the index of CH, or -1 if CH is not in this alphabet. */
+    private int indexOf(char ch) {
+        int slot = slot(ch);
+        if (slot == -1) {
+            return -1;
+        }
+        return _index[slot];
     }
 
     /** A default alphabet of all upper-case characters. */
@@ -51,12 +103,12 @@ class Alphabet {
 
     /** Returns the size of the alphabet. */
     int size() {
-        return _letters.size();
+        return _letters.length;
     }
 
     /** Returns true if CH is in this alphabet. */
     boolean contains(char ch) {
-        return _letters.contains(ch);
+        return indexOf(ch) != -1;
     }
 
     /** Returns character number INDEX in the alphabet, where
@@ -67,21 +119,43 @@ class Alphabet {
                     + index + " is out of bounds for an alphabet of length "
                     + size());
         }
-        return _letters.get(index);
+        return _letters[index];
     }
 
     /** Returns the index of character CH which must be in
      *  the alphabet. This is the inverse of toChar(). */
     int toInt(char ch) {
-        if (!contains(ch)) {
+        int index = indexOf(ch);
+        if (index == -1) {
             throw new EnigmaException("The alphabet does not contain " + ch);
 
         }
-        return _letters.indexOf(ch);
+        return index;
     }
 
-    /** An ArrayList containing each char in the alphabet. */
-    private ArrayList<Character> _letters;
+    /** Widest range of character codes indexed by a direct table. */
+    private static final int DENSE_LIMIT = 4096;
+
+    /** Multiplier used to scatter characters in the sparse table. */
+    private static final int HASH_MULTIPLIER = 0x9E3779B1;
+
+    /** Shift applied after HASH_MULTIPLIER to keep the high bits. */
+    private static final int HASH_SHIFT = 16;
+
+    /** An array containing each char in the alphabet. */
+    private char[] _letters;
+
+    /** Indices of the characters in the alphabet, or -1 for an unused
+     *  entry. Directly indexed by character code minus _offset, unless
+     *  _keys is non-null. */
+    private int[] _index;
+
+    /** Smallest character code in a dense table. */
+    private int _offset;
+
+    /** The character stored in each slot of a sparse table, or null
+     *  if the table is dense. */
+    private char[] _keys;
 
 
 }
@@ -0,0 +1,73 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the Alphabet class.
+ *  @author Ria Vora
+ */
+public class AlphabetTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    private Alphabet alphabet;
+
+    /** Check that alphabet maps each character of CHARS to its
+     *  index and back. TESTID is used in error messages. */
+    private void checkAlphabet(String testId, String chars) {
+        assertEquals(testId + " (wrong length)", chars.length(),
+                alphabet.size());
+        for (int i = 0; i < chars.length(); i += 1) {
+            char c = chars.charAt(i);
+            assertTrue(msg(testId, "missing '%c'", c), alphabet.contains(c));
+            assertEquals(msg(testId, "wrong index of '%c'", c),
+                    i, alphabet.toInt(c));
+            assertEquals(msg(testId, "wrong character at %d", i),
+                    c, alphabet.toChar(i));
+        }
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testDense() {
+        alphabet = UPPER;
+        checkAlphabet("upper", UPPER_STRING);
+        assertFalse(alphabet.contains('a'));
+        assertFalse(alphabet.contains('@'));
+        assertFalse(alphabet.contains('['));
+    }
+
+    @Test
+    public void testSparse() {
+        String chars = "A\u4e2d\u00e9z\uffef0";
+        alphabet = new Alphabet(chars);
+        checkAlphabet("sparse", chars);
+        assertFalse(alphabet.contains('B'));
+        assertFalse(alphabet.contains('\u4e2e'));
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testDuplicate() {
+        alphabet = new Alphabet("ABCA");
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testSparseDuplicate() {
+        alphabet = new Alphabet("A\u4e2dB\u4e2d");
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testToIntMissing() {
+        UPPER.toInt('a');
+    }
+
+}
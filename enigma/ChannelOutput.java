@@ -0,0 +1,77 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/** An output stream that collects bytes in a direct buffer and writes
+ *  them to a file channel only when the buffer fills up or on flush.
+ *  @author Ria Vora
+ */
+class ChannelOutput extends OutputStream {
+
+    /** An output stream writing to a new or truncated file named NAME. */
+    ChannelOutput(String name) {
+        try {
+            _channel = FileChannel.open(Path.of(name),
+                    StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+        } catch (IOException | RuntimeException excp) {
+            throw new EnigmaException("could not open " + name);
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (!_buffer.hasRemaining()) {
+            drain();
+        }
+        _buffer.put((byte) b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (!_buffer.hasRemaining()) {
+                drain();
+            }
+            int n = Math.min(len, _buffer.remaining());
+            _buffer.put(b, off, n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        drain();
+    }
+
+    @Override
+    public void close() throws IOException {
+        drain();
+        _channel.close();
+    }
+
+    /** Writes everything in the buffer to the channel. */
+    private void drain() throws IOException {
+        _buffer.flip();
+        while (_buffer.hasRemaining()) {
+            _channel.write(_buffer);
+        }
+        _buffer.clear();
+    }
+
+    /** Size of the buffer in bytes. */
+    private static final int BUFFER_SIZE = 1 << 18;
+
+    /** The file being written. */
+    private final FileChannel _channel;
+
+    /** Bytes not yet written to the channel. */
+    private final ByteBuffer _buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+}
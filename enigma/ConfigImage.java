@@ -0,0 +1,257 @@
+package enigma;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.zip.CRC32;
+
+/** A precompiled binary image of a machine configuration, holding its
+ *  alphabet, the wiring table of each rotor and the notches of the
+ *  moving rotors, so that a machine can be built from it without parsing
+ *  the text of the configuration. The image also records the path, size
+ *  and modification time of the configuration file it was compiled
+ *  from, and ends with a CRC-32 checksum of everything before it. Every
+ *  version of the format starts with the magic number, the version and
+ *  the path of the source, so that an image of another version can
+ *  still be replaced by its source.
+ *  @author Ria Vora
+ */
+class ConfigImage {
+
+    /** Compiles the configuration file named SOURCE into an image in the
+     *  file named IMAGE. */
+    static void compile(String source, String image) {
+        File file = new File(source);
+        ConfigReader config;
+        try {
+            config = new ConfigReader(new String(
+                    Files.readAllBytes(file.toPath())));
+        } catch (IOException | InvalidPathException excp) {
+            throw new EnigmaException("could not open " + source);
+        }
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            writeString(out, file.getAbsolutePath());
+            out.writeLong(file.length());
+            out.writeLong(file.lastModified());
+            writeString(out, alphabetChars(config.alphabet()));
+            out.writeInt(config.numRotors());
+            out.writeInt(config.pawls());
+            out.writeInt(config.rotors().size());
+            for (Rotor rotor : config.rotors()) {
+                writeRotor(out, rotor);
+            }
+            CRC32 crc = new CRC32();
+            crc.update(bytes.toByteArray());
+            out.writeLong(crc.getValue());
+            out.flush();
+            Files.write(Path.of(image), bytes.toByteArray());
+        } catch (IOException | InvalidPathException excp) {
+            throw new EnigmaException("could not write " + image);
+        }
+    }
+
+    /** Return true iff BYTES start like an image of any version. */
+    static boolean isImage(byte[] bytes) {
+        if (bytes.length < 2 * Integer.BYTES) {
+            return false;
+        }
+        ByteBuffer in = ByteBuffer.wrap(bytes);
+        int magic = in.getInt(), version = in.getInt();
+        return magic == MAGIC && version > 1 && version <= MAX_VERSION
+                || magic == FIRST_MAGIC && version == 1;
+    }
+
+    /** Reads the image in BYTES, which must start like one. If it is
+     *  damaged or of another version, or the configuration file it was
+     *  compiled from has changed since, reads that file instead. */
+    ConfigImage(byte[] bytes) {
+        ByteBuffer in = ByteBuffer.wrap(bytes);
+        String source = null;
+        try {
+            in.getInt();
+            int version = in.getInt();
+            source = readString(in);
+            if (version == VERSION) {
+                File file = new File(source);
+                long size = in.getLong(), modified = in.getLong();
+                boolean stale = file.exists() && (file.length() != size
+                        || file.lastModified() != modified);
+                if (checksumMatches(bytes) && !stale) {
+                    readBody(in);
+                    return;
+                }
+            }
+        } catch (BufferUnderflowException | EnigmaException excp) {
+            /* Damaged: read the source, if the image got to naming it. */
+        }
+        readSource(source);
+    }
+
+    /** Return the alphabet of the configuration. */
+    Alphabet alphabet() {
+        return _alphabet;
+    }
+
+    /** Return the number of rotor slots of the configuration. */
+    int numRotors() {
+        return _numRotors;
+    }
+
+    /** Return the number of pawls of the configuration. */
+    int pawls() {
+        return _pawls;
+    }
+
+    /** Return all of the rotors of the configuration. */
+    ArrayList<Rotor> rotors() {
+        return _rotors;
+    }
+
+    /** Reads the alphabet, numbers of rotors and pawls, and rotors
+     *  from IN. */
+    private void readBody(ByteBuffer in) {
+        _alphabet = new Alphabet(readString(in));
+        _numRotors = in.getInt();
+        _pawls = in.getInt();
+        int count = in.getInt();
+        _rotors = new ArrayList<Rotor>();
+        for (int i = 0; i < count; i++) {
+            String name = readString(in);
+            char kind = in.getChar();
+            String notches = kind == 'M' ? readString(in) : null;
+            int[] forward = new int[_alphabet.size()];
+            for (int j = 0; j < forward.length; j++) {
+                forward[j] = in.getChar();
+            }
+            Permutation perm = new Permutation(forward, _alphabet);
+            if (kind == 'M') {
+                _rotors.add(new MovingRotor(name, perm, notches));
+            } else if (kind == 'R') {
+                _rotors.add(new Reflector(name, perm));
+            } else {
+                _rotors.add(new FixedRotor(name, perm));
+            }
+        }
+    }
+
+    /** Reads the configuration file named SOURCE instead of a damaged or
+     *  stale image. */
+    private void readSource(String source) {
+        if (source == null) {
+            throw new EnigmaException("The configuration image is "
+                    + "damaged and does not name its source");
+        }
+        ConfigReader config;
+        try {
+            config = new ConfigReader(new String(
+                    Files.readAllBytes(Path.of(source))));
+        } catch (IOException | InvalidPathException excp) {
+            throw new EnigmaException("The configuration image is "
+                    + "damaged, and its source " + source
+                    + " could not be opened");
+        }
+        _alphabet = config.alphabet();
+        _numRotors = config.numRotors();
+        _pawls = config.pawls();
+        _rotors = config.rotors();
+    }
+
+    /** Return true iff the checksum at the end of BYTES is that of the
+     *  rest of them. */
+    private static boolean checksumMatches(byte[] bytes) {
+        if (bytes.length < Long.BYTES) {
+            return false;
+        }
+        int end = bytes.length - Long.BYTES;
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, end);
+        return ByteBuffer.wrap(bytes, end, Long.BYTES).getLong()
+                == crc.getValue();
+    }
+
+    /** Writes the kind, notches and wiring table of ROTOR to OUT. */
+    private static void writeRotor(DataOutputStream out, Rotor rotor)
+        throws IOException {
+        writeString(out, rotor.name());
+        if (rotor.reflecting()) {
+            out.writeChar('R');
+        } else if (rotor.rotates()) {
+            out.writeChar('M');
+            writeString(out, ((MovingRotor) rotor).notches());
+        } else {
+            out.writeChar('N');
+        }
+        Permutation perm = rotor.permutation();
+        for (int i = 0; i < perm.size(); i++) {
+            out.writeChar(perm.permute(i));
+        }
+    }
+
+    /** Return the characters of ALPHABET in order. */
+    private static String alphabetChars(Alphabet alphabet) {
+        char[] chars = new char[alphabet.size()];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = alphabet.toChar(i);
+        }
+        return new String(chars);
+    }
+
+    /** Writes the length and then the characters of S to OUT. */
+    private static void writeString(DataOutputStream out, String s)
+        throws IOException {
+        out.writeInt(s.length());
+        out.writeChars(s);
+    }
+
+    /** Return a string read from IN as written by writeString. */
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0 || length > in.remaining() / 2) {
+            throw new EnigmaException("bad string in configuration image");
+        }
+        char[] chars = new char[length];
+        in.asCharBuffer().get(chars);
+        in.position(in.position() + 2 * length);
+        return new String(chars);
+    }
+
+    /** The first four bytes of every image since version 2: 0xFF and
+     *  then "ENG". A text configuration starts so if it is in
+     *  ISO-8859-1 and begins with U+00FF and "ENG", but it would also
+     *  need three NUL characters after that to be taken for an image. */
+    private static final int MAGIC = 0xFF454E47;
+
+    /** The first four bytes of an image of version 1, "ENGB". */
+    private static final int FIRST_MAGIC = 0x454E4742;
+
+    /** The version of the image format written and read. */
+    private static final int VERSION = 2;
+
+    /** The greatest version recognized as an image, to be read from its
+     *  source if it is not VERSION. */
+    private static final int MAX_VERSION = 0xFF;
+
+    /** The alphabet of the configuration. */
+    private Alphabet _alphabet;
+
+    /** The number of rotor slots. */
+    private int _numRotors;
+
+    /** The number of pawls. */
+    private int _pawls;
+
+    /** The rotors of the configuration. */
+    private ArrayList<Rotor> _rotors;
+
+}
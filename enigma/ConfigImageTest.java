@@ -0,0 +1,141 @@
+package enigma;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the ConfigImage class.
+ *  @author Ria Vora
+ */
+public class ConfigImageTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** A small configuration with one rotor of each kind. */
+    private static final String CONFIG = "ABCD\n 3 1\n"
+            + " R R (AB)(CD)\n F N\t(ABC)\n M MAC (AD) (B)\n"
+            + "    (C)\n";
+
+    /** Compiles CONFIG into a temporary image and returns its bytes,
+     *  leaving the source in SOURCE. */
+    private byte[] compiled(File source) throws IOException {
+        Files.write(source.toPath(), CONFIG.getBytes());
+        File image = File.createTempFile("enigma", ".enigmab");
+        image.deleteOnExit();
+        ConfigImage.compile(source.getPath(), image.getPath());
+        return Files.readAllBytes(image.toPath());
+    }
+
+    /** Asserts that IMAGE holds the same rotors as CONFIG. */
+    private void checkRotors(ConfigImage image) {
+        ConfigReader config = new ConfigReader(CONFIG);
+        assertEquals(config.alphabet().size(), image.alphabet().size());
+        assertEquals(config.numRotors(), image.numRotors());
+        assertEquals(config.pawls(), image.pawls());
+        assertEquals(config.rotors().size(), image.rotors().size());
+        for (int i = 0; i < config.rotors().size(); i++) {
+            Rotor expected = config.rotors().get(i);
+            Rotor actual = image.rotors().get(i);
+            assertEquals(expected.name(), actual.name());
+            assertEquals(expected.reflecting(), actual.reflecting());
+            assertEquals(expected.rotates(), actual.rotates());
+            for (int p = 0; p < expected.size(); p++) {
+                assertEquals(expected.permutation().permute(p),
+                        actual.permutation().permute(p));
+                assertEquals(expected.notchAt(p), actual.notchAt(p));
+            }
+        }
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        File source = File.createTempFile("enigma", ".conf");
+        source.deleteOnExit();
+        byte[] bytes = compiled(source);
+        assertTrue(ConfigImage.isImage(bytes));
+        assertFalse(ConfigImage.isImage(CONFIG.getBytes()));
+        checkRotors(new ConfigImage(bytes));
+    }
+
+    @Test
+    public void testDamagedFallsBack() throws IOException {
+        File source = File.createTempFile("enigma", ".conf");
+        source.deleteOnExit();
+        byte[] bytes = compiled(source);
+        bytes[bytes.length - 20] ^= 1;
+        checkRotors(new ConfigImage(bytes));
+    }
+
+    @Test
+    public void testChangedSourceIsRead() throws IOException {
+        File source = File.createTempFile("enigma", ".conf");
+        source.deleteOnExit();
+        byte[] bytes = compiled(source);
+        String changed = CONFIG.replace("(ABC)", "(ACB)");
+        Files.write(source.toPath(), changed.getBytes());
+        assertTrue(source.setLastModified(source.lastModified() + 10000));
+        ConfigImage image = new ConfigImage(bytes);
+        assertEquals(0, image.rotors().get(1).permutation().permute(1));
+
+        Files.write(source.toPath(), (changed + "\n").getBytes());
+        image = new ConfigImage(bytes);
+        assertEquals(0, image.rotors().get(1).permutation().permute(1));
+    }
+
+    @Test
+    public void testTextStartingLikeImage() {
+        byte[] text = ("ENGBACDF\n 3 1\n R R (AE)(BC)(DG)(FN)\n F N (ABC)\n"
+                + " M MAC (AD) (B)\n").getBytes();
+        assertFalse(ConfigImage.isImage(text));
+        assertEquals(8, Main.readConfig(text).alphabet().size());
+    }
+
+    @Test
+    public void testOtherVersionsReadSource() throws IOException {
+        File source = File.createTempFile("enigma", ".conf");
+        source.deleteOnExit();
+        byte[] bytes = compiled(source);
+        Files.write(source.toPath(),
+                CONFIG.replace("(ABC)", "(ACB)").getBytes());
+        for (int version : new int[] {3, 1}) {
+            ByteBuffer.wrap(bytes).putInt(4, version);
+            if (version == 1) {
+                ByteBuffer.wrap(bytes).put(0, "ENGB".getBytes());
+            }
+            assertTrue(ConfigImage.isImage(bytes));
+            ConfigImage image = new ConfigImage(bytes);
+            assertEquals(0, image.rotors().get(1).permutation().permute(1));
+        }
+    }
+
+    @Test
+    public void testLatinTextStartingLikeImage() {
+        byte[] text = ("\u00ffENGACDF\n 3 1\n R R (\u00ffE)(NG)(AC)(DF)\n"
+                + " F N (ABC)\n M MAC (AD) (B)\n")
+                .getBytes(StandardCharsets.ISO_8859_1);
+        assertFalse(ConfigImage.isImage(text));
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testDamagedWithoutSource() throws IOException {
+        File source = File.createTempFile("enigma", ".conf");
+        byte[] bytes = compiled(source);
+        source.delete();
+        bytes[bytes.length - 20] ^= 1;
+        new ConfigImage(bytes);
+    }
+
+}
@@ -0,0 +1,29 @@
+package enigma;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/** A flight recorder event for reading a configuration into a machine.
+ *  @author Ria Vora
+ */
+@Name("enigma.ConfigLoad")
+@Label("Config Load")
+@Category("Enigma")
+@Description("A configuration file read into a machine")
+class ConfigLoadEvent extends Event {
+
+    /** Whether the configuration was a compiled image. */
+    @Label("Image")
+    boolean image;
+
+    /** Number of rotors available. */
+    @Label("Rotor Count")
+    int rotorCount;
+
+    /** Size of the alphabet. */
+    @Label("Alphabet Size")
+    int alphabetSize;
+}
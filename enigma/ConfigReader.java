@@ -0,0 +1,230 @@
+package enigma;
+
+import java.util.ArrayList;
+
+import static enigma.EnigmaException.*;
+
+/** A reader of machine configurations that goes through the text of a
+ *  configuration file one character at a time, with no regular
+ *  expressions. A configuration is an alphabet, the number of rotor
+ *  slots, the number of pawls, and then a description of each rotor:
+ *  its name, its type and notches, and its cycles. Tokens are separated
+ *  by whitespace, and errors report the line and column at which the
+ *  offending token starts.
+ *  @author Ria Vora
+ */
+class ConfigReader {
+
+    /** Reads the configuration in TEXT. */
+    ConfigReader(String text) {
+        _text = text;
+        readHeader();
+        _rotors = new ArrayList<Rotor>();
+        skipWhitespace();
+        while (_pos < _text.length()) {
+            _rotors.add(readRotor());
+            skipWhitespace();
+        }
+    }
+
+    /** Return the alphabet of the configuration. */
+    Alphabet alphabet() {
+        return _alphabet;
+    }
+
+    /** Return the number of rotor slots of the configuration. */
+    int numRotors() {
+        return _numRotors;
+    }
+
+    /** Return the number of pawls of the configuration. */
+    int pawls() {
+        return _pawls;
+    }
+
+    /** Return all of the rotors described in the configuration. */
+    ArrayList<Rotor> rotors() {
+        return _rotors;
+    }
+
+    /** Reads the alphabet, number of rotors and number of pawls. */
+    private void readHeader() {
+        String chars = nextToken("configuration file truncated");
+        try {
+            _alphabet = new Alphabet(chars);
+        } catch (EnigmaException excp) {
+            throw positioned(excp.getMessage());
+        }
+        _numRotors = nextInt();
+        _pawls = nextInt();
+    }
+
+    /** Return a rotor, reading its description from the text. */
+    private Rotor readRotor() {
+        String name = nextToken("bad rotor description");
+        int line = _tokenLine, column = _tokenColumn;
+        String type = nextToken("bad rotor description");
+        ArrayList<char[]> cycles = new ArrayList<char[]>();
+        skipWhitespace();
+        while (readCycles(cycles)) {
+            skipWhitespace();
+        }
+        try {
+            Permutation perm = new Permutation(
+                    cycles.toArray(new char[cycles.size()][]), _alphabet);
+            return createNewRotor(name, type, perm);
+        } catch (EnigmaException excp) {
+            throw error("line %d, column %d: %s", line, column,
+                    excp.getMessage());
+        }
+    }
+
+    /** Creates a new Rotor based off of a name, type, and permutation.
+     * @return a new Rotor based off the specifications
+     * @param name is the name of the new Rotor
+     * @param type is the type and notches (if needed) of the new Rotor
+     * @param perm is the permutation of the new Rotor*/
+    private Rotor createNewRotor(String name, String type, Permutation perm) {
+        if (type.equals("N")) {
+            return new FixedRotor(name, perm);
+        } else if (type.equals("R")) {
+            return new Reflector(name, perm);
+        } else if (type.charAt(0) == 'M') {
+            return new MovingRotor(name, perm, type.substring(1));
+        }
+        throw new EnigmaException("The rotor of name "
+                + name + " has the incorrect type of " + type);
+    }
+
+    /** If the next token is made of cycles "(cc...)(cc...)...", adds the
+     *  characters of each of them to CYCLES and returns true. Otherwise,
+     *  leaves the token to be read and returns false. */
+    private boolean readCycles(ArrayList<char[]> cycles) {
+        int end = tokenEnd();
+        int i = _pos;
+        if (i == end) {
+            return false;
+        }
+        while (i < end) {
+            i = Permutation.cycleEnd(_text, i, end);
+            if (i == -1) {
+                return false;
+            }
+        }
+        for (i = _pos; i < end;) {
+            int next = Permutation.cycleEnd(_text, i, end);
+            cycles.add(_text.substring(i + 1, next - 1).toCharArray());
+            i = next;
+        }
+        moveTo(end);
+        return true;
+    }
+
+    /** Return the next token as a number of rotors or pawls. */
+    private int nextInt() {
+        String token = nextToken("configuration file truncated");
+        int i = token.charAt(0) == '+' || token.charAt(0) == '-' ? 1 : 0;
+        if (i == token.length()) {
+            throw positioned("expected a number but found " + token);
+        }
+        boolean negative = token.charAt(0) == '-';
+        long limit = negative ? -(long) Integer.MIN_VALUE : Integer.MAX_VALUE;
+        long value = 0;
+        for (; i < token.length(); i++) {
+            char c = token.charAt(i);
+            if (c < '0' || c > '9') {
+                throw positioned("expected a number but found " + token);
+            }
+            value = 10 * value + (c - '0');
+            if (value > limit) {
+                throw positioned("expected a number but found " + token);
+            }
+        }
+        return (int) (negative ? -value : value);
+    }
+
+    /** Return the next token, or report an error with the message
+     *  MISSING if there is none. */
+    private String nextToken(String missing) {
+        skipWhitespace();
+        if (_pos == _text.length()) {
+            throw error(missing);
+        }
+        _tokenLine = _line;
+        _tokenColumn = _column;
+        int start = _pos;
+        moveTo(tokenEnd());
+        return _text.substring(start, _pos);
+    }
+
+    /** Return the position just past the token starting at the current
+     *  position. */
+    private int tokenEnd() {
+        int end = _pos;
+        while (end < _text.length()
+                && !Character.isWhitespace(_text.charAt(end))) {
+            end += 1;
+        }
+        return end;
+    }
+
+    /** Moves past any whitespace at the current position. */
+    private void skipWhitespace() {
+        while (_pos < _text.length()
+                && Character.isWhitespace(_text.charAt(_pos))) {
+            char c = _text.charAt(_pos);
+            _pos += 1;
+            if (c == '\n' || c == '\r' && !(_pos < _text.length()
+                    && _text.charAt(_pos) == '\n')) {
+                _line += 1;
+                _column = 1;
+            } else if (c != '\r') {
+                _column += 1;
+            }
+        }
+    }
+
+    /** Moves to position END within the current line. */
+    private void moveTo(int end) {
+        _column += end - _pos;
+        _pos = end;
+    }
+
+    /** Return an error with message MSG, reporting the position of the
+     *  last token read. */
+    private EnigmaException positioned(String msg) {
+        return error("line %d, column %d: %s", _tokenLine, _tokenColumn,
+                msg);
+    }
+
+    /** The text of the configuration. */
+    private final String _text;
+
+    /** The current position in _text. */
+    private int _pos;
+
+    /** The line of the current position, numbering from 1. */
+    private int _line = 1;
+
+    /** The column of the current position, numbering from 1. */
+    private int _column = 1;
+
+    /** The line at which the last token read starts. */
+    private int _tokenLine;
+
+    /** The column at which the last token read starts. */
+    private int _tokenColumn;
+
+    /** The alphabet of the configuration. */
+    private Alphabet _alphabet;
+
+    /** The number of rotor slots. */
+    private int _numRotors;
+
+    /** The number of pawls. */
+    private int _pawls;
+
+    /** The rotors described in the configuration. */
+    private ArrayList<Rotor> _rotors;
+
+}
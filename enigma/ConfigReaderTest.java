@@ -0,0 +1,90 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the ConfigReader class.
+ *  @author Ria Vora
+ */
+public class ConfigReaderTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** A small configuration with one rotor of each kind. */
+    private static final String CONFIG = "ABCD\n 3 1\n"
+            + " R R (AB)(CD)\n F N\t(ABC)\n M MAC (AD) (B)\n"
+            + "    (C)\n";
+
+    /** Returns the message of the error in reading TEXT. */
+    private String errorIn(String text) {
+        try {
+            new ConfigReader(text);
+        } catch (EnigmaException excp) {
+            return excp.getMessage();
+        }
+        fail("no error in " + text);
+        return null;
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testRead() {
+        ConfigReader config = new ConfigReader(CONFIG);
+        assertEquals(4, config.alphabet().size());
+        assertEquals(3, config.numRotors());
+        assertEquals(1, config.pawls());
+        assertEquals(3, config.rotors().size());
+
+        Rotor reflector = config.rotors().get(0);
+        assertTrue(reflector.reflecting());
+        assertEquals(1, reflector.permutation().permute(0));
+
+        Rotor fixed = config.rotors().get(1);
+        assertFalse(fixed.rotates());
+        assertEquals(0, fixed.permutation().permute(2));
+
+        Rotor moving = config.rotors().get(2);
+        assertTrue(moving.rotates());
+        assertEquals(3, moving.permutation().permute(0));
+        assertEquals(2, moving.permutation().permute(2));
+        assertTrue(moving.notchAt(0));
+        assertFalse(moving.notchAt(1));
+        assertTrue(moving.notchAt(2));
+    }
+
+    @Test
+    public void testErrorPositions() {
+        assertTrue(errorIn("ABCD\n 3 x\n").startsWith("line 2, column 4:"));
+        assertTrue(errorIn("AB(D 3 1").startsWith("line 1, column 1:"));
+        assertTrue(errorIn(CONFIG.replace("MAC", "XAC"))
+                .startsWith("line 5, column 2:"));
+        assertTrue(errorIn(CONFIG.replace("(C)", "(A)"))
+                .startsWith("line 5, column 2:"));
+        assertTrue(errorIn("ABCD\r\n 3 1\r\n R R (AB)(CC)")
+                .startsWith("line 3, column 2:"));
+    }
+
+    @Test
+    public void testHugeCounts() {
+        assertTrue(errorIn("ABCD\n 9999999999 1\n")
+                .startsWith("line 2, column 2:"));
+        assertTrue(errorIn("ABCD\n 3 2147483648\n")
+                .startsWith("line 2, column 4:"));
+        assertTrue(errorIn("ABCD\n 3 -2147483649\n")
+                .startsWith("line 2, column 4:"));
+    }
+
+    @Test
+    public void testTruncated() {
+        assertEquals("configuration file truncated", errorIn("ABCD 3"));
+        assertEquals("bad rotor description", errorIn("ABCD 3 1 R"));
+    }
+
+}
@@ -0,0 +1,21 @@
+package enigma;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/** A flight recorder event for converting one message line.
+ *  @author Ria Vora
+ */
+@Name("enigma.Conversion")
+@Label("Message Conversion")
+@Category("Enigma")
+@Description("A message line converted and written in groups")
+class ConversionEvent extends Event {
+
+    /** Number of characters converted. */
+    @Label("Characters")
+    int characters;
+}
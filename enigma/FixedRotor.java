@@ -21,4 +21,14 @@ class FixedRotor extends Rotor {
         set(setting);
     }
 
+    /** A non-moving rotor like ORIGINAL, at its 0 setting. */
+    FixedRotor(FixedRotor original) {
+        super(original);
+    }
+
+    @Override
+    Rotor copy() {
+        return new FixedRotor(this);
+    }
+
 }
@@ -0,0 +1,75 @@
+package enigma;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the flight recorder events.
+ *  @author Ria Vora
+ */
+public class FlightEventsTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(10);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** A small configuration with one rotor of each kind. */
+    private static final String CONFIG = "ABCD\n 3 1\n"
+            + " R R (AB)(CD)\n F N\t(ABC)\n M MAC (AD) (B)\n"
+            + "    (C)\n";
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testEvents() throws IOException {
+        HashMap<String, RecordedEvent> events = new HashMap<>();
+        Path file = Files.createTempFile("enigma", ".jfr");
+        try (Recording recording = new Recording()) {
+            for (String name : new String[] {"enigma.ConfigLoad",
+                "enigma.SessionSetup", "enigma.Conversion",
+                "enigma.OutputFlush"}) {
+                recording.enable(name);
+            }
+            recording.start();
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            GroupedWriter out = new GroupedWriter(bytes, false);
+            SessionWorker worker = new SessionWorker(
+                    Main.readConfig(CONFIG.getBytes()), out);
+            worker.setUp("* R F M AB (AC)");
+            worker.printMessageLine("ABC DAB");
+            out.flush();
+            recording.stop();
+            recording.dump(file);
+            for (RecordedEvent event : RecordingFile.readAllEvents(file)) {
+                events.put(event.getEventType().getName(), event);
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+        RecordedEvent load = events.get("enigma.ConfigLoad");
+        assertEquals(3, load.getInt("rotorCount"));
+        assertEquals(4, load.getInt("alphabetSize"));
+        assertFalse(load.getBoolean("image"));
+        RecordedEvent setup = events.get("enigma.SessionSetup");
+        assertEquals("R F M", setup.getString("rotors"));
+        assertEquals(1, setup.getInt("plugboardSize"));
+        assertEquals(6, events.get("enigma.Conversion")
+                .getInt("characters"));
+        assertEquals(8 + System.lineSeparator().length(),
+                events.get("enigma.OutputFlush").getInt("bytes"));
+    }
+
+}
@@ -0,0 +1,159 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+/** A writer of converted message lines in groups of five characters,
+ *  separated by spaces. Lines are collected in a reusable byte buffer
+ *  and written to the underlying stream only when it fills up or on
+ *  flush, so that one write covers many lines. Characters are encoded
+ *  in the default charset.
+ *  @author Ria Vora
+ */
+class GroupedWriter {
+
+    /** A writer to OUT. If AUTOFLUSH, every line is flushed as soon as
+     *  it is written. */
+    GroupedWriter(OutputStream out, boolean autoFlush) {
+        _out = out;
+        _autoFlush = autoFlush;
+    }
+
+    /** Writes the LEN characters of CHARS starting at OFF as one line,
+     *  in groups of five (except that the last group may have fewer
+     *  characters), each followed by a space. */
+    void writeLine(char[] chars, int off, int len) {
+        int end = off + len;
+        for (int i = off; i < end; i++) {
+            if (chars[i] >= ASCII_LIMIT) {
+                writeEncoded(chars, off, len);
+                return;
+            }
+        }
+        for (int i = off; i < end; i += GROUP) {
+            int groupEnd = Math.min(i + GROUP, end);
+            ensureRoom(GROUP + 1);
+            for (int j = i; j < groupEnd; j++) {
+                _buffer[_count] = (byte) chars[j];
+                _count += 1;
+            }
+            _buffer[_count] = ' ';
+            _count += 1;
+        }
+        newLine();
+    }
+
+    /** Writes a line ending. */
+    void newLine() {
+        ensureRoom(LINE_SEPARATOR.length);
+        System.arraycopy(LINE_SEPARATOR, 0, _buffer, _count,
+                LINE_SEPARATOR.length);
+        _count += LINE_SEPARATOR.length;
+        if (_autoFlush) {
+            flush();
+        }
+    }
+
+    /** Writes BYTES, already grouped and encoded by another writer, as
+     *  they are. */
+    void write(byte[] bytes) {
+        append(bytes);
+        if (_autoFlush) {
+            flush();
+        }
+    }
+
+    /** Writes everything collected so far to the underlying stream and
+     *  flushes it. */
+    void flush() {
+        OutputFlushEvent event = new OutputFlushEvent();
+        event.begin();
+        try {
+            _out.write(_buffer, 0, _count);
+            _out.flush();
+            if (event.shouldCommit()) {
+                event.bytes = _count;
+                event.commit();
+            }
+            _count = 0;
+        } catch (IOException excp) {
+            throw new EnigmaException("could not write output");
+        }
+    }
+
+    /** Writes everything collected so far and closes the underlying
+     *  stream. */
+    void close() {
+        flush();
+        try {
+            _out.close();
+        } catch (IOException excp) {
+            throw new EnigmaException("could not close output");
+        }
+    }
+
+    /** Writes the LEN characters of CHARS starting at OFF as writeLine
+     *  does, when some of them are not ASCII. */
+    private void writeEncoded(char[] chars, int off, int len) {
+        StringBuilder line = new StringBuilder(len + len / GROUP + 1);
+        for (int i = 0; i < len; i += GROUP) {
+            line.append(chars, off + i, Math.min(GROUP, len - i));
+            line.append(' ');
+        }
+        byte[] bytes = line.toString().getBytes(Charset.defaultCharset());
+        append(bytes);
+        newLine();
+    }
+
+    /** Adds BYTES to the buffer, or writes them straight to the
+     *  underlying stream if they do not fit in it. */
+    private void append(byte[] bytes) {
+        ensureRoom(bytes.length);
+        if (bytes.length > _buffer.length) {
+            flush();
+            try {
+                _out.write(bytes);
+            } catch (IOException excp) {
+                throw new EnigmaException("could not write output");
+            }
+        } else {
+            System.arraycopy(bytes, 0, _buffer, _count, bytes.length);
+            _count += bytes.length;
+        }
+    }
+
+    /** Makes sure there is room for at least N more bytes in the
+     *  buffer, if N is no larger than the buffer. */
+    private void ensureRoom(int n) {
+        if (_count + n > _buffer.length) {
+            flush();
+        }
+    }
+
+    /** Number of characters in a group. */
+    private static final int GROUP = 5;
+
+    /** Characters below this are written as a single byte. */
+    private static final char ASCII_LIMIT = 0x80;
+
+    /** Size of the buffer in bytes. */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** The bytes of a line ending. */
+    private static final byte[] LINE_SEPARATOR =
+        System.lineSeparator().getBytes(Charset.defaultCharset());
+
+    /** The stream being written. */
+    private final OutputStream _out;
+
+    /** Whether to flush after every line. */
+    private final boolean _autoFlush;
+
+    /** Bytes not yet written to _out. */
+    private final byte[] _buffer = new byte[BUFFER_SIZE];
+
+    /** Number of bytes in _buffer. */
+    private int _count;
+
+}
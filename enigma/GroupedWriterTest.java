@@ -0,0 +1,79 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+
+/** The suite of all JUnit tests for the GroupedWriter class.
+ *  @author Ria Vora
+ */
+public class GroupedWriterTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Line ending of this system. */
+    private static final String NL = System.lineSeparator();
+
+    /** Returns what a GroupedWriter writes for each of LINES. */
+    private String written(String... lines) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GroupedWriter writer = new GroupedWriter(out, false);
+        for (String line : lines) {
+            writer.writeLine(line.toCharArray(), 0, line.length());
+        }
+        writer.flush();
+        return out.toString();
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testGroups() {
+        assertEquals(NL, written(""));
+        assertEquals("ABC " + NL, written("ABC"));
+        assertEquals("ABCDE " + NL, written("ABCDE"));
+        assertEquals("ABCDE FGHIJ K " + NL + "LM " + NL,
+                written("ABCDEFGHIJK", "LM"));
+    }
+
+    @Test
+    public void testBuffered() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GroupedWriter writer = new GroupedWriter(out, false);
+        writer.writeLine("HELLO".toCharArray(), 0, 5);
+        writer.newLine();
+        assertEquals(0, out.size());
+        writer.flush();
+        assertEquals("HELLO " + NL + NL, out.toString());
+    }
+
+    @Test
+    public void testLongLine() {
+        StringBuilder line = new StringBuilder();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 100000; i++) {
+            line.append("HELLO");
+            expected.append("HELLO ");
+        }
+        expected.append(NL);
+        assertEquals(expected.toString(), written(line.toString()));
+    }
+
+    @Test
+    public void testAutoFlush() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GroupedWriter writer = new GroupedWriter(out, true);
+        writer.writeLine("HELLOWORLD".toCharArray(), 5, 5);
+        assertEquals("WORLD " + NL, out.toString());
+        writer.newLine();
+        assertEquals("WORLD " + NL + NL, out.toString());
+    }
+
+}
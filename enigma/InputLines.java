@@ -0,0 +1,27 @@
+package enigma;
+
+/** The lines of a file of settings and messages, as read by Main.
+ *  Tokens are separated by whitespace, including line ends.
+ *  @author Ria Vora
+ */
+interface InputLines {
+
+    /** Return true iff there is another line to read. */
+    boolean hasNextLine();
+
+    /** Return the next line without its line terminator, moving past
+     *  it. */
+    String nextLine();
+
+    /** Return true iff the next token, which may be on a later line, is
+     *  exactly "*". */
+    boolean atSettings();
+
+    /** Return true iff there is a next token, which may be on a later
+     *  line, and it does not contain a "*". */
+    boolean atMessage();
+
+    /** Closes the source of the lines. */
+    void close();
+
+}
@@ -1,7 +1,10 @@
 package enigma;
 
+import java.nio.CharBuffer;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import static enigma.EnigmaException.*;
 
@@ -12,53 +15,53 @@ class Machine {
 
     /** A new Enigma machine with alphabet ALPHA, 1 < NUMROTORS rotor slots,
      *  and 0 <= PAWLS < NUMROTORS pawls.  ALLROTORS contains all the
-     *  available rotors. */
+     *  available rotors, which are set to 0. The machine moves them as
+     *  it converts, so no other machine may use them. */
     Machine(Alphabet alpha, int numRotors, int pawls,
             ArrayList<Rotor> allRotors) {
+        _spec = new MachineSpec(alpha, numRotors, pawls, allRotors);
         _alphabet = alpha;
-        setNumRotors(numRotors);
-        setPawls(pawls);
-        setAllRotors(allRotors);
+        _pawls = pawls;
+        _own = allRotors.toArray(new Rotor[allRotors.size()]);
+        for (Rotor rotor : allRotors) {
+            rotor.set(0);
+        }
     }
 
-    /** Checks if the number of rotors is greater than one (otherwise it
-     * throws an exception) and then it initializes NUMROTORS. */
-    private void setNumRotors(int numRotors) {
-        if (numRotors <= 1) {
-            throw new EnigmaException("You have too few rotors, "
-                    + numRotors + " is not enough! You need more than one.");
-        }
-        _numRotors = numRotors;
+    /** A new Enigma machine on SPEC, which any number of machines on
+     *  any number of threads may share. The machine moves copies of the
+     *  rotors of SPEC of its own, made when it first uses them. */
+    Machine(MachineSpec spec) {
+        _spec = spec;
+        _alphabet = spec.alphabet();
+        _pawls = spec.numPawls();
+        _own = new Rotor[spec.rotorCount()];
     }
 
-    /** Checks if 0 <= PAWLS < NUMROTORS pawls
-     * (otherwise it throws an exception) and then it initializes
-     * PAWLS. */
-    private void setPawls(int pawls) {
-        if (pawls < 0 || pawls >= _numRotors) {
-            throw new EnigmaException("You passed in " + pawls + ","
-                    + "but your pawls need to be >= 0"
-                    + " and < the number of rotors.");
-        }
-        _pawls = pawls;
+    /** Return the spec of my alphabet and rotors. */
+    MachineSpec spec() {
+        return _spec;
     }
 
-    /** Initializes the collection of rotors given to the setting
-     * of 0.
-     * @param allRotors is all of the given rotors*/
-    private void setAllRotors(ArrayList<Rotor> allRotors) {
-        if (allRotors.isEmpty()) {
-            throw new EnigmaException("You cannot have no rotors!");
-        }
-        _allRotors = allRotors;
-        for (int i = 0; i < _allRotors.size(); i++) {
-            _allRotors.get(i).set(0);
-        }
+    /** Return my alphabet. */
+    Alphabet alphabet() {
+        return _alphabet;
     }
 
     /** Return the number of rotor slots I have. */
     int numRotors() {
-        return _numRotors;
+        return _spec.numRotors();
+    }
+
+    /** Count my conversions and settings in METRICS, or in nothing if
+     *  METRICS is null. */
+    void setMetrics(Metrics metrics) {
+        _metrics = metrics;
+    }
+
+    /** Return the metrics counting my work, or null. */
+    Metrics metrics() {
+        return _metrics;
     }
 
     /** Return the number pawls (and thus rotating rotors) I have. */
@@ -70,116 +73,93 @@ class Machine {
      *  available rotors (ROTORS[0] names the reflector).
      *  Initially, all rotors are set at their 0 setting. */
     void insertRotors(String[] rotors) {
+        _slots = _spec.slots(rotors);
         _rotors = new ArrayList<Rotor>();
-        checkRotors(rotors);
-        setReflector(rotors[0]);
-        for (int i = 1; i < rotors.length; i++) {
-            Rotor rotor = findRotor(rotors[i]);
-            rotor.set(0);
-
-            if (i >= rotors.length - _pawls && !rotor.rotates()) {
-                throw new EnigmaException("You have " + _pawls + ""
-                        + "pawls but not " + "enough moving rotors! Rotor "
-                        + rotor.name() + " does not rotate.");
-            } else if (i < rotors.length - _pawls && rotor.rotates()) {
-                throw new EnigmaException("You have " + _pawls
-                        + " pawls but too many moving " + "rotors! Rotor "
-                        + rotor.name() + " rotates, but shouldn't");
-            }
-
-            if (!_rotors.contains(rotor)) {
-                _rotors.add(i, rotor);
-            } else {
-                throw new EnigmaException("You cannot put the same "
-                        + rotor + " into the machine twice!");
-            }
-        }
-    }
-
-    /** Checks whether the length of the rotors array is
-     * equal to the number of rotors.
-     * @param rotors is a string of rotor names*/
-    private void checkRotors(String[] rotors) {
-        if (rotors.length == 0) {
-            throw new EnigmaException("You cannot set a "
-                    + "machine with no rotors!");
-        } else if (rotors.length < _numRotors) {
-            throw new EnigmaException("You cannot set a machine "
-                    + "with too little rotors! "
-                    + "You are supposed to have " + _numRotors
-                    + " rotors but you have only given " + rotors.length);
-        } else if (rotors.length > _numRotors) {
-            throw new EnigmaException("You cannot set a "
-                    + " machine with too many rotors! "
-                    + "You are supposed to have " + _numRotors
-                    + " rotors but you have given " + rotors.length);
-        }
-
-        for (int i = 0; i < rotors.length; i++) {
-            if (!hasRotor(rotors[i])) {
-                throw new EnigmaException("The given rotor "
-                        + rotors[i] + " is not in your "
-                        + "selection of all rotors!");
-            }
-        }
-
-    }
-
-    /** Checks whether the first rotor is a reflector and sets
-     * it to the first position in the rotors ArrayList.
-     * @param name is the name of the first rotor*/
-    private void setReflector(String name) {
-        Rotor rotor = findRotor(name);
-        if (!rotor.reflecting()) {
-            throw new EnigmaException("You cannot set "
-                    + name + " to be the"
-                    + " first rotor because it is not a reflector!");
-        }
-        _rotors.add(0, rotor);
-    }
-
-    /** Searches through all of the rotors to return
-     * the rotor with the given name.
-     * @param name is the name of the rotor*/
-    private Rotor findRotor(String name) {
-        for (int i = 0; i < _allRotors.size(); i++) {
-            Rotor rotor = _allRotors.get(i);
-            if (rotor.name().equals(name)) {
-                return rotor;
+        _advanced = new boolean[rotors.length];
+        _settings = new int[rotors.length];
+        for (int i = 0; i < _slots.length; i++) {
+            Rotor rotor = rotor(_slots[i]);
+            if (i > 0) {
+                rotor.set(0);
             }
+            _rotors.add(rotor);
         }
-        throw new EnigmaException("The rotor named "
-                + name + " is not one of the possible rotors!");
+        resetPosition();
     }
 
     /** Set my rotors according to SETTING, which must be a string of
      *  numRotors()-1 characters in my alphabet. The first letter refers
      *  to the leftmost rotor setting (not counting the reflector).  */
     void setRotors(String setting) {
-        checkSetting(setting);
+        _spec.checkSetting(setting);
         for (int i = 1; i < _rotors.size(); i++) {
             int newSetting = _alphabet.toInt(setting.charAt(i - 1));
             _rotors.get(i).set(newSetting);
         }
+        resetPosition();
+    }
+
+    /** Makes the current rotor settings the ones at position 0. */
+    private void resetPosition() {
+        _position = 0;
+        _schedule = null;
+        _table = null;
+        _tableChecked = false;
+        _composed = false;
+        _notchesCounted = false;
+        _starts = new int[_pawls];
+        for (int i = 0; i < _pawls; i++) {
+            _starts[i] = _rotors.get(_rotors.size() - _pawls + i).setting();
+        }
     }
 
-    /** Checks whether a setting is the proper length
-     * and is contained in the alphabet.
-     * @param setting is the string dictating
-     * the setting of each of the rotors*/
-    private void checkSetting(String setting) {
-        if (setting.length() != numRotors() - 1) {
-            throw new EnigmaException("The setting " + setting + " is "
-                    + " not the right length!"
-                    + " It should be of length " + (numRotors() - 1));
+    /** Return the number of key presses since the rotors were last
+     *  inserted or set. */
+    long position() {
+        return _position;
+    }
+
+    /** Set my rotors to the settings they would have after N key presses
+     *  from position 0, without stepping through them. Throws an
+     *  EnigmaException if the stepping of my rotors is too irregular
+     *  to schedule. */
+    void seek(long n) {
+        if (n < 0) {
+            throw new EnigmaException("You cannot seek to the negative "
+                    + "position " + n);
+        }
+        if (_rotors.isEmpty()) {
+            throw new EnigmaException("You have not set up your rotors yet!");
+        }
+        int first = _rotors.size() - _pawls;
+        StepSchedule schedule = schedule();
+        for (int i = 0; i < _pawls; i++) {
+            _rotors.get(first + i).set(schedule.setting(i, n));
         }
-        for (int i = 0; i < setting.length(); i++) {
-            if (!_alphabet.contains(setting.charAt(i))) {
-                throw new EnigmaException("The setting " + setting
-                        + " has the letter " + setting.charAt(i)
-                        + " which is not in the alphabet!");
+        _position = n;
+        _composed = false;
+        _notchesCounted = false;
+    }
+
+    /** Return the schedule of my moving rotors from position 0,
+     *  computing it if needed. */
+    private StepSchedule schedule() {
+        if (_schedule == null) {
+            Rotor[] moving = new Rotor[_pawls];
+            for (int i = 0; i < _pawls; i++) {
+                moving[i] = _rotors.get(_rotors.size() - _pawls + i);
             }
+            _schedule = new StepSchedule(moving, _starts);
+        }
+        return _schedule;
+    }
+
+    /** Return my rotor with index I, as numbered by my spec's slots. */
+    private Rotor rotor(int i) {
+        if (_own[i] == null) {
+            _own[i] = _spec.rotor(i).copy();
         }
+        return _own[i];
     }
 
     /** Returns true or false based on whether the
@@ -187,17 +167,51 @@ class Machine {
      * of allRotors that the machine has access to.
      * @param name is the name of the rotor*/
     boolean hasRotor(String name) {
-        for (int i = 0; i < _allRotors.size(); i++) {
-            if (_allRotors.get(i).name().equals(name)) {
-                return true;
-            }
-        }
-        return false;
+        return _spec.hasRotor(name);
     }
 
     /** Set the plugboard to PLUGBOARD. */
     void setPlugboard(Permutation plugboard) {
         _plugboard = plugboard;
+        _table = null;
+        _tableChecked = false;
+    }
+
+    /** Convert messages by walking a table of my whole conversion at
+     *  every position of the cycle of my rotor settings, built when
+     *  first needed after my rotors or plugboard are set, if it takes
+     *  at most BUDGET bytes. Otherwise, or if BUDGET is 0, convert
+     *  through my rotors. */
+    void setPositionTableBudget(long budget) {
+        _tableBudget = budget;
+        _table = null;
+        _tableChecked = false;
+    }
+
+    /** Return true iff my messages are converted with a position table
+     *  (see setPositionTableBudget). */
+    boolean positionTabled() {
+        return positionTable() != null;
+    }
+
+    /** Return my position table, building it if needed, or null if I do
+     *  not have one. */
+    private PositionTable positionTable() {
+        if (!_tableChecked) {
+            _tableChecked = true;
+            if (_tableBudget > 0 && _plugboard != null && _rotors != null
+                    && !_rotors.isEmpty()) {
+                int first = _rotors.size() - _pawls;
+                int[] settings = new int[_rotors.size()];
+                for (int i = 0; i < settings.length; i++) {
+                    settings[i] = i < first ? _rotors.get(i).setting()
+                            : _starts[i - first];
+                }
+                _table = PositionTable.build(_spec, _slots, settings,
+                        _plugboard, _tableBudget);
+            }
+        }
+        return _table;
     }
 
     /** Returns the result of converting the input character C (as an
@@ -214,46 +228,213 @@ class Machine {
             throw new EnigmaException("You haven't created a plugboard yet!");
         }
         c = _plugboard.permute(c);
-        for (int i = _rotors.size() - 1; i >= 0; i--) {
-            c = _rotors.get(i).convertForward(c);
-        }
-        for (int i = 1; i < _rotors.size(); i++) {
-            c = _rotors.get(i).convertBackward(c);
+        int last = _rotors.size() - 1;
+        if (_pawls > 0) {
+            c = _rotors.get(last).convertForward(c);
+            c = _rotors.get(last).convertBackward(convertInner(c));
+        } else {
+            c = convertInner(c);
         }
         c = _plugboard.invert(c);
         return c;
     }
 
+    /** Returns the conversion of C (an index in my alphabet) by all of
+     *  my rotors left of the last moving one, or all of my rotors if
+     *  none moves, as if they were one reflector. Remembers the
+     *  conversions until one of those rotors moves, or keeps them in a
+     *  RotorTree if I have many rotors (see setRotorTreeMinimum). */
+    private int convertInner(int c) {
+        if (!_composed) {
+            compose();
+        }
+        if (_tree != null) {
+            c = _tree.convertForward(c);
+            c = _rotors.get(0).convertForward(c);
+            return _tree.convertBackward(c);
+        }
+        int result = _inner[c];
+        if (result < 0) {
+            int first = _rotors.size() - _pawls;
+            int end = _pawls > 0 ? _rotors.size() - 1 : first;
+            result = c;
+            for (int i = end - 1; i >= first; i--) {
+                result = _rotors.get(i).convertForward(result);
+            }
+            result = _stationary[result];
+            for (int i = first; i < end; i++) {
+                result = _rotors.get(i).convertBackward(result);
+            }
+            _inner[c] = result;
+        }
+        return result;
+    }
+
+    /** Composes the conversions of my reflector and my rotors that do
+     *  not move at their current settings into _stationary, and forgets
+     *  the conversions in _inner, or, if I have many rotors, puts my
+     *  rotors left of the last moving one but the reflector into _tree. */
+    private void compose() {
+        int n = _alphabet.size();
+        _composed = true;
+        if (_rotors.size() >= _treeMinimum) {
+            int end = _pawls > 0 ? _rotors.size() - 1 : _rotors.size();
+            if (_tree == null || !_tree.fits(n, end - 1)) {
+                _tree = new RotorTree(n, end - 1);
+            }
+            _tree.setAll(_rotors.subList(0, end), 1);
+            return;
+        }
+        _tree = null;
+        if (_stationary == null || _stationary.length != n) {
+            _stationary = new int[n];
+            _inner = new int[n];
+        }
+        int first = _rotors.size() - _pawls;
+        for (int c = 0; c < n; c++) {
+            int result = c;
+            for (int i = first - 1; i >= 0; i--) {
+                result = _rotors.get(i).convertForward(result);
+            }
+            for (int i = 1; i < first; i++) {
+                result = _rotors.get(i).convertBackward(result);
+            }
+            _stationary[c] = result;
+        }
+        Arrays.fill(_inner, -1);
+    }
+
+    /** Convert through a RotorTree of my rotors when I have at least
+     *  ROTORS rotor slots, so that moving a rotor other than the last
+     *  one takes time proportional to the log of the number of rotors
+     *  times the size of my alphabet, and converting takes constant
+     *  time. */
+    void setRotorTreeMinimum(int rotors) {
+        _treeMinimum = rotors;
+        _composed = false;
+    }
+
     /** Moves the rotors in the machine forward based on whether they can
-     * advance or not. */
+     * advance or not. Unless a rotor that can carry another is at a
+     * notch, only the last rotor moves, counting down to its next
+     * notch, and the others are not looked at. */
     void advance() {
-        HashMap<String, Boolean> canAdvance = new HashMap<String, Boolean>();
         if (_rotors.isEmpty()) {
             throw new EnigmaException("You have not set up your rotors yet!");
         }
-        for (int i = 0; i < _rotors.size(); i++) {
-            canAdvance.put(_rotors.get(i).name(), true);
+        int last = _rotors.size() - 1;
+        if (_notchesCounted && _notched == 0
+                && (_pawls < 2 || !_rotors.get(last).atNotch())) {
+            if (_pawls > 0) {
+                _rotors.get(last).advance();
+            }
+            _position += 1;
+            return;
         }
+        for (int i = 0; i < _settings.length; i++) {
+            _settings[i] = _rotors.get(i).setting();
+        }
+        _spec.advance(_slots, _settings, _advanced);
+        boolean innerMoved = false;
+        for (int i = 0; i < _settings.length; i++) {
+            if (_advanced[i]) {
+                _rotors.get(i).advance();
+                if (i < last && _tree != null && _composed) {
+                    _tree.set(i - 1, _rotors.get(i));
+                }
+                innerMoved |= i < last;
+            }
+        }
+        if (innerMoved && _composed && _tree == null) {
+            Arrays.fill(_inner, -1);
+        }
+        _position += 1;
+        countNotches();
+    }
 
-        Rotor lastRotor =  _rotors.get(_rotors.size() - 1);
+    /** Counts into _notched my moving rotors other than the first and
+     *  last that are at a notch, so that the next key press carries
+     *  the rotor to the left of each. */
+    private void countNotches() {
+        _notched = 0;
+        for (int i = _rotors.size() - _pawls + 1; i < _rotors.size() - 1;
+             i++) {
+            if (_rotors.get(i).atNotch()) {
+                _notched += 1;
+            }
+        }
+        _notchesCounted = true;
+    }
 
-        for (int i = _rotors.size() - _pawls; i < _rotors.size() - 1; i++) {
-            Rotor leftRotor = _rotors.get(i + 1);
-            Rotor currentRotor = _rotors.get(i);
-            if (leftRotor.atNotch()) {
-                if (canAdvance.get(currentRotor.name())) {
-                    currentRotor.advance();
-                    canAdvance.replace(currentRotor.name(), false);
-                }
-                if (canAdvance.get(leftRotor.name())) {
-                    leftRotor.advance();
-                    canAdvance.replace(leftRotor.name(), false);
-                }
+    /** Return my current state, for restore. Takes time proportional to
+     *  the number of my rotors. */
+    MachineState snapshot() {
+        if (_rotors == null || _rotors.isEmpty()) {
+            throw new EnigmaException("You have not set up your rotors yet!");
+        }
+        int n = _slots.length;
+        int[] state = new int[2 * n];
+        for (int i = 0; i < n; i++) {
+            state[i] = _slots[i];
+            state[n + i] = _rotors.get(i).setting();
+        }
+        return new MachineState(_spec, state, _starts, _plugboard,
+                _position);
+    }
+
+    /** Puts me back into STATE, which must have been taken from a
+     *  machine with my spec, without checking my rotors again. Takes
+     *  time proportional to the number of my rotors. */
+    void restore(MachineState state) {
+        if (state.spec() != _spec) {
+            throw new EnigmaException("The state was not taken "
+                    + "from this machine!");
+        }
+        int n = state.size();
+        if (!state.sameStart(_slots, _starts)) {
+            _schedule = null;
+            _table = null;
+            _tableChecked = false;
+        } else if (_table != null && !sameFixed(state)) {
+            _table = null;
+            _tableChecked = false;
+        }
+        if (_slots == null) {
+            _slots = new int[n];
+            _advanced = new boolean[n];
+            _settings = new int[n];
+        }
+        if (_rotors == null || _rotors.size() != n) {
+            _rotors = new ArrayList<Rotor>(n);
+            for (int i = 0; i < n; i++) {
+                _rotors.add(null);
             }
         }
-        if (canAdvance.get(lastRotor.name())) {
-            lastRotor.advance();
+        for (int i = 0; i < n; i++) {
+            Rotor rotor = rotor(state.slot(i));
+            _slots[i] = state.slot(i);
+            rotor.set(state.setting(i));
+            _rotors.set(i, rotor);
+        }
+        _starts = state.starts();
+        _plugboard = state.plugboard();
+        _position = state.position();
+        _composed = false;
+        _notchesCounted = false;
+    }
+
+    /** Return true iff STATE has my plugboard and the settings of my
+     *  rotors that do not move. */
+    private boolean sameFixed(MachineState state) {
+        if (state.plugboard() != _plugboard) {
+            return false;
+        }
+        for (int i = 0; i < _rotors.size() - _pawls; i++) {
+            if (state.setting(i) != _rotors.get(i).setting()) {
+                return false;
+            }
         }
+        return true;
     }
 
     /** Prints the settings of each rotor in a row,
@@ -272,33 +453,310 @@ class Machine {
     /** Returns the encoding/decoding of MSG, updating the state of
      *  the rotors accordingly. */
     String convert(String msg) {
-        char[] resultArr = new char[msg.length()];
-        for (int i = 0; i < resultArr.length; i++) {
-            int c = _alphabet.toInt(msg.charAt(i));
-            resultArr[i] = _alphabet.toChar(convert(c));
+        char[] chars = msg.toCharArray();
+        convert(chars, 0, chars.length, chars, 0);
+        return new String(chars);
+    }
+
+    /** Converts the LEN characters of SRC starting at OFF, writing the
+     *  results into DST starting at DSTOFF and updating the state of the
+     *  rotors accordingly. SRC and DST may be the same array, in which
+     *  case the characters are converted in place. */
+    void convert(char[] src, int off, int len, char[] dst, int dstOff) {
+        checkRange(src, off, len, dst, dstOff);
+        long start = _metrics == null ? 0 : System.nanoTime();
+        if (_tableBudget > 0 && positionTable() != null) {
+            convertTabled(src, off, len, dst, dstOff);
+        } else {
+            for (int i = 0; i < len; i++) {
+                int c = _alphabet.toInt(src[off + i]);
+                dst[dstOff + i] = _alphabet.toChar(convert(c));
+            }
         }
-        String result = "";
-        for (char a: resultArr) {
-            result += a;
+        if (_metrics != null) {
+            _metrics.converted(len, System.nanoTime() - start);
+        }
+    }
+
+    /** Converts the LEN characters of SRC starting at OFF into DST
+     *  starting at DSTOFF, as convert(SRC, OFF, LEN, DST, DSTOFF) would,
+     *  by walking my position table, and then moves my rotors to where
+     *  they would be.
+     * @param src is the source buffer
+     * @param off is the start of the range in SRC
+     * @param len is the length of the range
+     * @param dst is the destination buffer
+     * @param dstOff is the start of the range in DST*/
+    private void convertTabled(char[] src, int off, int len, char[] dst,
+                               int dstOff) {
+        PositionTable table = _table;
+        int row = table.row(_position + 1);
+        int done = 0;
+        try {
+            for (; done < len; done++) {
+                int c = _alphabet.toInt(src[off + done]);
+                dst[dstOff + done] = _alphabet.toChar(table.convert(row, c));
+                row = table.next(row);
+            }
+        } finally {
+            if (done > 0) {
+                _position += done;
+                int last = table.row(_position);
+                int first = _rotors.size() - _pawls;
+                for (int i = 0; i < _pawls; i++) {
+                    _rotors.get(first + i).set(table.setting(last, i));
+                }
+                _composed = false;
+                _notchesCounted = false;
+            }
+        }
+    }
+
+    /** Returns the encoding/decoding of MSG, as convert(MSG) would,
+     *  but converting pieces of it in parallel on POOL. Afterwards, the
+     *  rotors are where convert(MSG) would leave them. */
+    String convertParallel(String msg, ForkJoinPool pool) {
+        char[] chars = msg.toCharArray();
+        convertParallel(chars, 0, chars.length, chars, 0, pool);
+        return new String(chars);
+    }
+
+    /** Converts the LEN characters of SRC starting at OFF into DST
+     *  starting at DSTOFF, as convert(SRC, OFF, LEN, DST, DSTOFF) would,
+     *  but converting pieces of them in parallel on POOL. Each piece
+     *  finds its starting rotor settings from the step schedule, so the
+     *  rotors themselves are only moved once, to where the sequential
+     *  conversion would leave them. Short messages, and those of
+     *  machines whose stepping cannot be scheduled, are converted
+     *  sequentially instead. Either way, if a character is not in the
+     *  alphabet, the rotors do not move at all. My metrics count the
+     *  whole conversion as one message. */
+    void convertParallel(char[] src, int off, int len, char[] dst,
+                         int dstOff, ForkJoinPool pool) {
+        checkRange(src, off, len, dst, dstOff);
+        for (int i = 0; i < len; i++) {
+            _alphabet.toInt(src[off + i]);
+        }
+        if (len <= PARALLEL_PIECE) {
+            convert(src, off, len, dst, dstOff);
+            return;
+        }
+        if (_plugboard == null) {
+            throw new EnigmaException("You haven't created a plugboard yet!");
+        }
+        if (_rotors.isEmpty()) {
+            throw new EnigmaException("You have not set up your rotors yet!");
+        }
+        long began = _metrics == null ? 0 : System.nanoTime();
+        try {
+            schedule();
+        } catch (EnigmaException excp) {
+            convert(src, off, len, dst, dstOff);
+            return;
+        }
+        long start = _position;
+        pool.invoke(new ConvertTask(src, off, len, dst, dstOff, start));
+        seek(start + len);
+        if (_metrics != null) {
+            _metrics.converted(len, System.nanoTime() - began);
+        }
+    }
+
+    /** Checks that LEN characters starting at OFF lie within SRC and
+     * that LEN characters starting at DSTOFF lie within DST.
+     * @param src is the source buffer
+     * @param off is the start of the range in SRC
+     * @param len is the length of the range
+     * @param dst is the destination buffer
+     * @param dstOff is the start of the range in DST*/
+    private void checkRange(char[] src, int off, int len,
+                            char[] dst, int dstOff) {
+        if (off < 0 || len < 0 || off + len > src.length
+                || dstOff < 0 || dstOff + len > dst.length) {
+            throw new EnigmaException("The range of " + len
+                    + " characters does not fit in the given buffers");
+        }
+    }
+
+    /** Converts the LEN characters of SRC starting at OFF into DST
+     *  starting at DSTOFF, without touching my rotors, as if the first
+     *  of them were typed after POSITION key presses.
+     * @param src is the source buffer
+     * @param off is the start of the range in SRC
+     * @param len is the length of the range
+     * @param dst is the destination buffer
+     * @param dstOff is the start of the range in DST
+     * @param position is the number of key presses before SRC[OFF]*/
+    private void convertPiece(char[] src, int off, int len, char[] dst,
+                              int dstOff, long position) {
+        int[] settings = new int[_rotors.size()];
+        boolean[] advanced = new boolean[_rotors.size()];
+        int first = settings.length - _pawls;
+        for (int i = 0; i < settings.length; i++) {
+            if (i < first) {
+                settings[i] = _rotors.get(i).setting();
+            } else {
+                settings[i] = _schedule.setting(i - first, position);
+            }
+        }
+        for (int i = 0; i < len; i++) {
+            int c = _alphabet.toInt(src[off + i]);
+            _spec.advance(_slots, settings, advanced);
+            dst[dstOff + i] = _alphabet.toChar(
+                    _spec.convert(_slots, _plugboard, c, settings));
+        }
+    }
+
+    /** A piece of a parallel conversion, split in halves until the
+     *  pieces are at most PARALLEL_PIECE characters long. */
+    private class ConvertTask extends RecursiveAction {
+
+        /** A task converting the LEN characters of SRC starting at OFF
+         *  into DST starting at DSTOFF, the first of them being typed
+         *  after POSITION key presses. */
+        ConvertTask(char[] src, int off, int len, char[] dst, int dstOff,
+                    long position) {
+            _src = src;
+            _off = off;
+            _len = len;
+            _dst = dst;
+            _dstOff = dstOff;
+            _start = position;
+        }
+
+        @Override
+        protected void compute() {
+            if (_len <= PARALLEL_PIECE) {
+                convertPiece(_src, _off, _len, _dst, _dstOff, _start);
+                return;
+            }
+            int half = _len / 2;
+            invokeAll(new ConvertTask(_src, _off, half, _dst, _dstOff,
+                            _start),
+                    new ConvertTask(_src, _off + half, _len - half, _dst,
+                            _dstOff + half, _start + half));
+        }
+
+        /** The source buffer. */
+        private final char[] _src;
+
+        /** Start of my characters in _src. */
+        private final int _off;
+
+        /** Number of characters to convert. */
+        private final int _len;
+
+        /** The destination buffer. */
+        private final char[] _dst;
+
+        /** Start of my results in _dst. */
+        private final int _dstOff;
+
+        /** Number of key presses before my first character. */
+        private final long _start;
+
+        /** Version of my serialized form. */
+        private static final long serialVersionUID = 1L;
+    }
+
+    /** Converts the remaining characters of BUF in place, from its
+     *  position to its limit, updating the state of the rotors
+     *  accordingly. BUF must be writable. Afterwards, its position is at
+     *  its limit. */
+    void convert(CharBuffer buf) {
+        if (buf.hasArray()) {
+            int start = buf.arrayOffset() + buf.position();
+            convert(buf.array(), start, buf.remaining(), buf.array(), start);
+            buf.position(buf.limit());
+            return;
+        }
+        while (buf.hasRemaining()) {
+            int c = _alphabet.toInt(buf.get(buf.position()));
+            buf.put(_alphabet.toChar(convert(c)));
         }
-        return result;
     }
 
+    /** Longest piece of a message converted by a single task in a
+     *  parallel conversion. */
+    private static final int PARALLEL_PIECE = 1 << 14;
+
+    /** Least number of rotors for which a machine converts through a
+     *  RotorTree by default. */
+    static final int TREE_ROTORS = 16;
+
+    /** My alphabet, numbers of slots and pawls, and available rotors. */
+    private final MachineSpec _spec;
+
+    /** The rotors I move, by their index in _spec. */
+    private final Rotor[] _own;
+
     /** Common alphabet of my rotors. */
     private final Alphabet _alphabet;
 
-    /** Number of rotors in my machine. */
-    private int _numRotors;
-
     /** Number of pawls in my machine. */
-    private int _pawls;
+    private final int _pawls;
 
-    /** All possible rotors that could be used. */
-    private ArrayList<Rotor> _allRotors;
+    /** The index in _spec of the rotor in each of my slots. */
+    private int[] _slots;
 
     /** The rotors being used in my machine. */
     private ArrayList<Rotor> _rotors;
 
+    /** Whether the rotor in each slot has moved during the current
+     *  key press. */
+    private boolean[] _advanced;
+
+    /** Scratch space for the setting of each slot. */
+    private int[] _settings;
+
+    /** The number of key presses since the rotors were last set. */
+    private long _position;
+
+    /** The settings of my moving rotors at position 0. */
+    private int[] _starts;
+
+    /** When to step my moving rotors from their settings at position 0,
+     *  or null if not yet needed. */
+    private StepSchedule _schedule;
+
     /** The plugboard being used in my machine. */
     private Permutation _plugboard;
+
+    /** Largest size in bytes of my position table, or 0 for none. */
+    private long _tableBudget;
+
+    /** My position table, or null if I do not have one. */
+    private PositionTable _table;
+
+    /** Whether _table is up to date with my rotors and plugboard. */
+    private boolean _tableChecked;
+
+    /** The conversions of my reflector and the rotors that do not move,
+     *  composed, if _composed. */
+    private int[] _stationary;
+
+    /** The conversions of C by my rotors left of the last moving one
+     *  (see convertInner), or -1 if not yet known, if _composed. */
+    private int[] _inner;
+
+    /** The rotors left of the last moving one but the reflector, if I
+     *  have at least _treeMinimum rotors and _composed. */
+    private RotorTree _tree;
+
+    /** Least number of rotors for which I convert through _tree. */
+    private int _treeMinimum = TREE_ROTORS;
+
+    /** Whether _stationary and _inner, or _tree, are up to date with my
+     *  rotors. */
+    private boolean _composed;
+
+    /** The number of my moving rotors other than the first and last at
+     *  a notch, if _notchesCounted. */
+    private int _notched;
+
+    /** Whether _notched is up to date with my rotors. */
+    private boolean _notchesCounted;
+
+    /** Where my work is counted, or null. */
+    private Metrics _metrics;
 }
@@ -0,0 +1,103 @@
+package enigma;
+
+/** The changing part of an enigma machine: which rotors are in its
+ *  slots, their settings and its plugboard, kept as small arrays
+ *  against a shared MachineSpec. A cursor belongs to one thread at a
+ *  time, but any number of cursors may use the same spec at once.
+ *  @author Ria Vora
+ */
+class MachineCursor {
+
+    /** A cursor for SPEC with the rotors of SPEC indexed by SLOTS in its
+     *  slots, all at their 0 setting, and no plugboard. */
+    MachineCursor(MachineSpec spec, int[] slots) {
+        _spec = spec;
+        _slots = slots.clone();
+        _settings = new int[slots.length];
+        _advanced = new boolean[slots.length];
+    }
+
+    /** Return my spec. */
+    MachineSpec spec() {
+        return _spec;
+    }
+
+    /** Return the setting of the rotor in slot I (0 for the
+     *  reflector). */
+    int setting(int i) {
+        return _settings[i];
+    }
+
+    /** Set my rotors according to SETTING, which must be a string of
+     *  numRotors()-1 characters in my alphabet. The first letter refers
+     *  to the leftmost rotor setting (not counting the reflector).  */
+    void setRotors(String setting) {
+        _spec.checkSetting(setting);
+        Alphabet alphabet = _spec.alphabet();
+        for (int i = 1; i < _settings.length; i++) {
+            _settings[i] = alphabet.toInt(setting.charAt(i - 1));
+        }
+    }
+
+    /** Set the plugboard to PLUGBOARD. */
+    void setPlugboard(Permutation plugboard) {
+        _plugboard = plugboard;
+    }
+
+    /** Returns the result of converting the input character C (as an
+     *  index in the range 0..alphabet size - 1), after first advancing
+     *  my rotors. */
+    int convert(int c) {
+        if (c < 0 || c > _spec.alphabet().size() - 1) {
+            throw new EnigmaException("The input character index " + c
+                    + " is outside of the index "
+                    + "of 0 to the alphabet of size "
+                    + _spec.alphabet().size());
+        }
+        if (_plugboard == null) {
+            throw new EnigmaException("You haven't created a plugboard yet!");
+        }
+        _spec.advance(_slots, _settings, _advanced);
+        return _spec.convert(_slots, _plugboard, c, _settings);
+    }
+
+    /** Returns the encoding/decoding of MSG, updating my settings
+     *  accordingly. */
+    String convert(String msg) {
+        char[] chars = msg.toCharArray();
+        convert(chars, 0, chars.length, chars, 0);
+        return new String(chars);
+    }
+
+    /** Converts the LEN characters of SRC starting at OFF, writing the
+     *  results into DST starting at DSTOFF and updating my settings
+     *  accordingly. SRC and DST may be the same array. */
+    void convert(char[] src, int off, int len, char[] dst, int dstOff) {
+        if (off < 0 || len < 0 || off + len > src.length
+                || dstOff < 0 || dstOff + len > dst.length) {
+            throw new EnigmaException("The range of " + len
+                    + " characters does not fit in the given buffers");
+        }
+        Alphabet alphabet = _spec.alphabet();
+        for (int i = 0; i < len; i++) {
+            int c = alphabet.toInt(src[off + i]);
+            dst[dstOff + i] = alphabet.toChar(convert(c));
+        }
+    }
+
+    /** The spec whose rotors I use. */
+    private final MachineSpec _spec;
+
+    /** The index in _spec of the rotor in each slot. */
+    private final int[] _slots;
+
+    /** The setting of the rotor in each slot. */
+    private final int[] _settings;
+
+    /** Whether the rotor in each slot has moved during the current
+     *  key press. */
+    private final boolean[] _advanced;
+
+    /** My plugboard. */
+    private Permutation _plugboard;
+}
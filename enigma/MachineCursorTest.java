@@ -0,0 +1,168 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the MachineSpec and MachineCursor
+ *  classes.
+ *  @author Ria Vora
+ */
+public class MachineCursorTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** The rotors B Beta III IV I. */
+    private static final String[] ROTORS = {"B", "Beta", "III", "IV", "I"};
+
+    /** Returns new rotors with the wirings in GIVEN and the notches of
+     *  the naval rotors. */
+    private ArrayList<Rotor> rotors(HashMap<String, String> given) {
+        ArrayList<Rotor> all = new ArrayList<Rotor>();
+        HashMap<String, String> notches = new HashMap<String, String>();
+        notches.put("I", "Q"); notches.put("II", "E"); notches.put("III", "V");
+        notches.put("IV", "J"); notches.put("V", "Z"); notches.put("VI", "ZM");
+        notches.put("VII", "ZM"); notches.put("VIII", "ZM");
+        Alphabet alpha = new Alphabet(UPPER_STRING);
+        for (String name : given.keySet()) {
+            Permutation perm = new Permutation(given.get(name), alpha);
+            if (name.equals("B") || name.equals("C")) {
+                all.add(new Reflector(name, perm));
+            } else if (name.equals("Beta") || name.equals("Gamma")) {
+                all.add(new FixedRotor(name, perm));
+            } else {
+                all.add(new MovingRotor(name, perm, notches.get(name)));
+            }
+        }
+        return all;
+    }
+
+    /** Returns a spec with 5 slots, 3 pawls and the naval rotors. */
+    private MachineSpec spec() {
+        return new MachineSpec(new Alphabet(UPPER_STRING), 5, 3,
+                rotors(NAVALA));
+    }
+
+    /** Returns a cursor on SPEC with rotors ROTORS set to AXLE and the
+     *  plugboard (YF) (HZ). */
+    private MachineCursor cursor(MachineSpec spec) {
+        MachineCursor cursor = spec.cursor(ROTORS);
+        cursor.setRotors("AXLE");
+        cursor.setPlugboard(new Permutation("(YF) (HZ)", spec.alphabet()));
+        return cursor;
+    }
+
+    /** Returns a message of LEN letters. */
+    private String message(int len) {
+        StringBuilder msg = new StringBuilder();
+        for (int i = 0; i < len; i++) {
+            msg.append((char) ('A' + (i * 7 + i / 26) % 26));
+        }
+        return msg.toString();
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testMatchesMachine() {
+        Machine machine = new Machine(new Alphabet(UPPER_STRING), 5, 3,
+                rotors(NAVALA));
+        machine.insertRotors(ROTORS);
+        machine.setRotors("AXLE");
+        machine.setPlugboard(new Permutation("(YF) (HZ)",
+                new Alphabet(UPPER_STRING)));
+        MachineCursor cursor = cursor(spec());
+        String msg = message(20000);
+        assertEquals(machine.convert(msg), cursor.convert(msg));
+        assertEquals(machine.rowOfRotors(), rowOf(cursor));
+    }
+
+    @Test
+    public void testConvertMsg() {
+        MachineCursor cursor = spec().cursor(ROTORS);
+        cursor.setRotors("AXLE");
+        cursor.setPlugboard(new Permutation("(YF) (HZ) (MS) (AP) (LI)",
+                new Alphabet(UPPER_STRING)));
+        assertEquals("ZYSG", cursor.convert("YMPI"));
+    }
+
+    @Test
+    public void testSharedSpec() {
+        MachineSpec spec = spec();
+        MachineCursor first = cursor(spec);
+        MachineCursor second = cursor(spec);
+        String msg = message(500);
+        StringBuilder fromFirst = new StringBuilder();
+        StringBuilder fromSecond = new StringBuilder();
+        for (int i = 0; i < msg.length(); i++) {
+            String c = msg.substring(i, i + 1);
+            fromFirst.append(first.convert(c));
+            if (i % 2 == 0) {
+                fromSecond.append(second.convert(c));
+            }
+        }
+        fromSecond.append(second.convert(msg.substring(250)));
+        assertEquals(cursor(spec).convert(msg), fromFirst.toString());
+        assertNotEquals(fromFirst.toString(), fromSecond.toString());
+    }
+
+    @Test
+    public void testConcurrentCursors() throws InterruptedException {
+        MachineSpec spec = spec();
+        String msg = message(50000);
+        String expected = cursor(spec).convert(msg);
+        String[] results = new String[8];
+        Thread[] threads = new Thread[results.length];
+        for (int i = 0; i < threads.length; i++) {
+            int k = i;
+            threads[i] = new Thread(() -> {
+                results[k] = cursor(spec).convert(msg);
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (String result : results) {
+            assertEquals(expected, result);
+        }
+    }
+
+    @Test
+    public void testTableLimit() {
+        MachineSpec tabled = spec();
+        MachineSpec plain = new MachineSpec(new Alphabet(UPPER_STRING), 5,
+                3, rotors(NAVALA), 25);
+        for (int i = 0; i < tabled.rotorCount(); i++) {
+            assertTrue(tabled.rotor(i).tabled());
+            assertFalse(plain.rotor(i).tabled());
+        }
+        assertEquals(cursor(tabled).convert(message(1000)),
+                cursor(plain).convert(message(1000)));
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testBadRotors() {
+        spec().cursor(new String[] {"B", "Beta", "I", "IV", "I"});
+    }
+
+    /** Returns the settings of the slots of CURSOR as letters. */
+    private String rowOf(MachineCursor cursor) {
+        String result = "";
+        for (int i = 0; i < ROTORS.length; i++) {
+            result += (char) ('A' + cursor.setting(i));
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,253 @@
+package enigma;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/** The unchanging part of an enigma machine: its alphabet, numbers of
+ *  rotor slots and pawls, and the wiring and notches of all of its
+ *  available rotors. A spec only uses the conversions of its rotors at
+ *  given settings, never their own settings, so one spec may be shared
+ *  by any number of MachineCursors on any number of threads.
+ *  @author Ria Vora
+ */
+class MachineSpec {
+
+    /** A spec with alphabet ALPHA, 1 < NUMROTORS rotor slots,
+     *  0 <= PAWLS < NUMROTORS pawls, and the rotors in ALLROTORS, whose
+     *  conversions are precomputed up to Rotor.TABLE_LIMIT. */
+    MachineSpec(Alphabet alpha, int numRotors, int pawls,
+                List<Rotor> allRotors) {
+        this(alpha, numRotors, pawls, allRotors, Rotor.TABLE_LIMIT);
+    }
+
+    /** A spec with alphabet ALPHA, 1 < NUMROTORS rotor slots,
+     *  0 <= PAWLS < NUMROTORS pawls, and the rotors in ALLROTORS. The
+     *  conversions of the rotors are precomputed if the alphabet has at
+     *  most TABLELIMIT characters, for as many rotors as fit in
+     *  TABLE_MEMORY ints. The copies of the rotors used by machines on
+     *  me share those tables. */
+    MachineSpec(Alphabet alpha, int numRotors, int pawls,
+                List<Rotor> allRotors, int tableLimit) {
+        if (numRotors <= 1) {
+            throw new EnigmaException("You have too few rotors, "
+                    + numRotors + " is not enough! You need more than one.");
+        }
+        if (pawls < 0 || pawls >= numRotors) {
+            throw new EnigmaException("You passed in " + pawls + ","
+                    + "but your pawls need to be >= 0"
+                    + " and < the number of rotors.");
+        }
+        if (allRotors.isEmpty()) {
+            throw new EnigmaException("You cannot have no rotors!");
+        }
+        _alphabet = alpha;
+        _numRotors = numRotors;
+        _pawls = pawls;
+        _allRotors = allRotors.toArray(new Rotor[allRotors.size()]);
+        _rotorIndex = new HashMap<String, Integer>();
+        for (int i = 0; i < _allRotors.length; i++) {
+            _rotorIndex.putIfAbsent(_allRotors[i].name(), i);
+        }
+        long memory = 0;
+        for (Rotor rotor : _allRotors) {
+            long size = rotor.size();
+            if (size <= tableLimit && memory + 2 * size * size
+                    <= TABLE_MEMORY) {
+                memory += 2 * size * size;
+                rotor.setTables();
+            }
+        }
+    }
+
+    /** Return my alphabet. */
+    Alphabet alphabet() {
+        return _alphabet;
+    }
+
+    /** Return the number of rotor slots I have. */
+    int numRotors() {
+        return _numRotors;
+    }
+
+    /** Return the number pawls (and thus rotating rotors) I have. */
+    int numPawls() {
+        return _pawls;
+    }
+
+    /** Return true iff one of my rotors is named NAME. */
+    boolean hasRotor(String name) {
+        return _rotorIndex.containsKey(name);
+    }
+
+    /** Return the number of my rotors. */
+    int rotorCount() {
+        return _allRotors.length;
+    }
+
+    /** Return my rotor with index I, as numbered by slots. */
+    Rotor rotor(int i) {
+        return _allRotors[i];
+    }
+
+    /** Return a cursor with its slots holding the rotors named ROTORS
+     *  (ROTORS[0] names the reflector), all at their 0 setting, and no
+     *  plugboard yet. */
+    MachineCursor cursor(String[] rotors) {
+        return new MachineCursor(this, slots(rotors));
+    }
+
+    /** Return the indices of the rotors named ROTORS, which must name a
+     *  reflector, then the rotors that do not move, then one moving
+     *  rotor per pawl, each at most once. */
+    int[] slots(String[] rotors) {
+        checkRotors(rotors);
+        int[] slots = new int[rotors.length];
+        slots[0] = _rotorIndex.get(rotors[0]);
+        if (!_allRotors[slots[0]].reflecting()) {
+            throw new EnigmaException("You cannot set "
+                    + rotors[0] + " to be the"
+                    + " first rotor because it is not a reflector!");
+        }
+        for (int i = 1; i < rotors.length; i++) {
+            int index = _rotorIndex.get(rotors[i]);
+            Rotor rotor = _allRotors[index];
+
+            if (i >= rotors.length - _pawls && !rotor.rotates()) {
+                throw new EnigmaException("You have " + _pawls + ""
+                        + "pawls but not " + "enough moving rotors! Rotor "
+                        + rotor.name() + " does not rotate.");
+            } else if (i < rotors.length - _pawls && rotor.rotates()) {
+                throw new EnigmaException("You have " + _pawls
+                        + " pawls but too many moving " + "rotors! Rotor "
+                        + rotor.name() + " rotates, but shouldn't");
+            }
+
+            for (int j = 0; j < i; j++) {
+                if (slots[j] == index) {
+                    throw new EnigmaException("You cannot put the same "
+                            + rotor + " into the machine twice!");
+                }
+            }
+            slots[i] = index;
+        }
+        return slots;
+    }
+
+    /** Checks whether the length of the rotors array is
+     * equal to the number of rotors.
+     * @param rotors is a string of rotor names*/
+    private void checkRotors(String[] rotors) {
+        if (rotors.length == 0) {
+            throw new EnigmaException("You cannot set a "
+                    + "machine with no rotors!");
+        } else if (rotors.length < _numRotors) {
+            throw new EnigmaException("You cannot set a machine "
+                    + "with too little rotors! "
+                    + "You are supposed to have " + _numRotors
+                    + " rotors but you have only given " + rotors.length);
+        } else if (rotors.length > _numRotors) {
+            throw new EnigmaException("You cannot set a "
+                    + " machine with too many rotors! "
+                    + "You are supposed to have " + _numRotors
+                    + " rotors but you have given " + rotors.length);
+        }
+
+        for (int i = 0; i < rotors.length; i++) {
+            if (!hasRotor(rotors[i])) {
+                throw new EnigmaException("The given rotor "
+                        + rotors[i] + " is not in your "
+                        + "selection of all rotors!");
+            }
+        }
+
+    }
+
+    /** Checks whether a setting is the proper length
+     * and is contained in the alphabet.
+     * @param setting is the string dictating
+     * the setting of each of the rotors*/
+    void checkSetting(String setting) {
+        if (setting.length() != _numRotors - 1) {
+            throw new EnigmaException("The setting " + setting + " is "
+                    + " not the right length!"
+                    + " It should be of length " + (_numRotors - 1));
+        }
+        for (int i = 0; i < setting.length(); i++) {
+            if (!_alphabet.contains(setting.charAt(i))) {
+                throw new EnigmaException("The setting " + setting
+                        + " has the letter " + setting.charAt(i)
+                        + " which is not in the alphabet!");
+            }
+        }
+    }
+
+    /** Moves SETTINGS, the setting of the rotor in each of SLOTS,
+     * forward as one key press would move the rotors. Records in
+     * ADVANCED which slots have moved.
+     * @param slots holds the index of the rotor in each slot
+     * @param settings holds the setting of each slot
+     * @param advanced holds whether each slot has moved*/
+    void advance(int[] slots, int[] settings, boolean[] advanced) {
+        Arrays.fill(advanced, false);
+        int last = settings.length - 1;
+
+        for (int i = settings.length - _pawls; i < last; i++) {
+            if (_allRotors[slots[i + 1]].notchAt(settings[i + 1])) {
+                advanceOnce(i, slots, settings, advanced);
+                advanceOnce(i + 1, slots, settings, advanced);
+            }
+        }
+        advanceOnce(last, slots, settings, advanced);
+    }
+
+    /** Advances the setting of slot I unless it has already moved
+     * during this key press.
+     * @param i is the index of the slot
+     * @param slots holds the index of the rotor in each slot
+     * @param settings holds the setting of each slot
+     * @param advanced holds whether each slot has moved*/
+    private void advanceOnce(int i, int[] slots, int[] settings,
+                             boolean[] advanced) {
+        if (!advanced[i]) {
+            Rotor rotor = _allRotors[slots[i]];
+            if (rotor.rotates()) {
+                settings[i] = (settings[i] + 1) % rotor.size();
+            }
+            advanced[i] = true;
+        }
+    }
+
+    /** Returns the result of converting the input character C (as an
+     *  index in the range 0..alphabet size - 1) through PLUGBOARD and
+     *  the rotors in SLOTS at SETTINGS, without advancing them. */
+    int convert(int[] slots, Permutation plugboard, int c, int[] settings) {
+        c = plugboard.permute(c);
+        for (int i = slots.length - 1; i >= 0; i--) {
+            c = _allRotors[slots[i]].convertForward(c, settings[i]);
+        }
+        for (int i = 1; i < slots.length; i++) {
+            c = _allRotors[slots[i]].convertBackward(c, settings[i]);
+        }
+        return plugboard.invert(c);
+    }
+
+    /** Common alphabet of my rotors. */
+    private final Alphabet _alphabet;
+
+    /** Number of rotor slots. */
+    private final int _numRotors;
+
+    /** Number of pawls. */
+    private final int _pawls;
+
+    /** All of my rotors. */
+    private final Rotor[] _allRotors;
+
+    /** The index in _allRotors of the first rotor with each name. */
+    private final HashMap<String, Integer> _rotorIndex;
+
+    /** Most ints used by the conversion tables of the rotors of one
+     *  spec. */
+    static final int TABLE_MEMORY = 1 << 24;
+}
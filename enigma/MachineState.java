@@ -0,0 +1,103 @@
+package enigma;
+
+import java.util.Arrays;
+
+/** The complete state of a Machine at one moment: the rotor in each
+ *  slot, the settings of the rotors, the plugboard, and the number of
+ *  key presses since the rotors were set. A state cannot change, and
+ *  may be restored into the machine it was taken from any number of
+ *  times.
+ *  @author Ria Vora
+ */
+final class MachineState {
+
+    /** The state of a machine built on SPEC whose slots hold the rotors
+     *  of SPEC indexed by the first half of STATE, at the settings in
+     *  its second half, after STARTS was the settings of its moving
+     *  rotors at position 0, with PLUGBOARD and at POSITION. STATE and
+     *  STARTS are kept, not copied. */
+    MachineState(MachineSpec spec, int[] state, int[] starts,
+                 Permutation plugboard, long position) {
+        _spec = spec;
+        _state = state;
+        _starts = starts;
+        _plugboard = plugboard;
+        _position = position;
+    }
+
+    /** Return the spec of the machine I was taken from. */
+    MachineSpec spec() {
+        return _spec;
+    }
+
+    /** Return the number of slots. */
+    int size() {
+        return _state.length / 2;
+    }
+
+    /** Return the index in spec() of the rotor in slot I. */
+    int slot(int i) {
+        return _state[i];
+    }
+
+    /** Return the setting of the rotor in slot I. */
+    int setting(int i) {
+        return _state[size() + i];
+    }
+
+    /** Return the plugboard. */
+    Permutation plugboard() {
+        return _plugboard;
+    }
+
+    /** Return the number of key presses since the rotors were set. */
+    long position() {
+        return _position;
+    }
+
+    /** Return true iff the rotors in my slots are those in SLOTS and
+     *  the settings of my moving rotors at position 0 were STARTS. */
+    boolean sameStart(int[] slots, int[] starts) {
+        return slots != null
+                && Arrays.equals(_state, 0, size(), slots, 0, slots.length)
+                && Arrays.equals(_starts, starts);
+    }
+
+    /** Return the settings of my moving rotors at position 0, which
+     *  must not be changed. */
+    int[] starts() {
+        return _starts;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < size(); i++) {
+            if (i > 0) {
+                result.append(' ');
+            }
+            result.append(_spec.rotor(slot(i)).name());
+        }
+        result.append(' ');
+        for (int i = 1; i < size(); i++) {
+            result.append(_spec.alphabet().toChar(setting(i)));
+        }
+        return result.append(" @").append(_position).toString();
+    }
+
+    /** The spec of the machine I was taken from. */
+    private final MachineSpec _spec;
+
+    /** The rotor index of each slot, followed by the setting of each
+     *  slot. */
+    private final int[] _state;
+
+    /** The settings of the moving rotors at position 0. */
+    private final int[] _starts;
+
+    /** The plugboard. */
+    private final Permutation _plugboard;
+
+    /** The number of key presses since the rotors were set. */
+    private final long _position;
+}
@@ -5,8 +5,12 @@ import org.junit.Rule;
 import org.junit.rules.Timeout;
 import static org.junit.Assert.*;
 
+import java.lang.management.ManagementFactory;
+import java.nio.CharBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.concurrent.ForkJoinPool;
 
 import static enigma.TestUtils.*;
 
@@ -205,5 +209,370 @@ public class MachineTest {
         assertEquals("AAAB", machine.rowOfRotors());
     }
 
+    @Test
+    public void testAdvanceAllocation() {
+        com.sun.management.ThreadMXBean bean =
+                (com.sun.management.ThreadMXBean)
+                        ManagementFactory.getThreadMXBean();
+        setRotors(NAVALA);
+        machine = new Machine(new Alphabet(alpha), 5, 3, allRotors);
+        machine.insertRotors(new String[] {"B", "Beta", "III", "IV", "I"});
+        machine.setRotors("AXLE");
+        machine.setPlugboard(new Permutation("(YF) (HZ)", new Alphabet(alpha)));
+        int chars = 200000;
+        for (int i = 0; i < chars; i++) {
+            machine.convert(i % 26);
+        }
+        long id = Thread.currentThread().getId();
+        long before = bean.getThreadAllocatedBytes(id);
+        for (int i = 0; i < chars; i++) {
+            machine.convert(i % 26);
+        }
+        long allocated = bean.getThreadAllocatedBytes(id) - before;
+        assertTrue("allocated " + allocated + " bytes converting " + chars
+                + " characters", allocated < 1024);
+    }
+
+    /** Returns a machine with rotors B Beta III IV I set to AXLE
+     *  and the plugboard (YF) (HZ). */
+    private Machine setUpMachine() {
+        setRotors(NAVALA);
+        Machine result = new Machine(new Alphabet(alpha), 5, 3, allRotors);
+        result.insertRotors(new String[] {"B", "Beta", "III", "IV", "I"});
+        result.setRotors("AXLE");
+        result.setPlugboard(new Permutation("(YF) (HZ)", new Alphabet(alpha)));
+        return result;
+    }
+
+    @Test
+    public void testConvertBuffers() {
+        String msg = "FROMHISSHOULDERHIAWATHATOOKTHECAMERAOFROSEWOOD";
+        String expected = setUpMachine().convert(msg);
+
+        char[] dst = new char[msg.length() + 2];
+        setUpMachine().convert(msg.toCharArray(), 0, msg.length(), dst, 2);
+        assertEquals(expected, new String(dst, 2, msg.length()));
+
+        char[] inPlace = ("xx" + msg).toCharArray();
+        setUpMachine().convert(inPlace, 2, msg.length(), inPlace, 2);
+        assertEquals(expected, new String(inPlace, 2, msg.length()));
+
+        CharBuffer buf = CharBuffer.wrap(msg.toCharArray());
+        setUpMachine().convert(buf);
+        assertFalse(buf.hasRemaining());
+        buf.flip();
+        assertEquals(expected, buf.toString());
+    }
+
+    /** Returns a machine over ALPHA with a reflector and moving rotors
+     *  with the given NOTCHES, from left to right, set to SETTING. */
+    private Machine movingMachine(String alphaChars, String setting,
+                                  String... notches) {
+        Alphabet testAlpha = new Alphabet(alphaChars);
+        String cycle = "(" + alphaChars + ")";
+        ArrayList<Rotor> rotors = new ArrayList<Rotor>();
+        rotors.add(new Reflector("R", new Permutation(cycle, testAlpha)));
+        String[] names = new String[notches.length + 1];
+        names[0] = "R";
+        for (int i = 0; i < notches.length; i++) {
+            names[i + 1] = "M" + i;
+            rotors.add(new MovingRotor(names[i + 1],
+                    new Permutation(cycle, testAlpha), notches[i]));
+        }
+        Machine result = new Machine(testAlpha, names.length,
+                notches.length, rotors);
+        result.insertRotors(names);
+        result.setRotors(setting);
+        result.setPlugboard(new Permutation("", testAlpha));
+        return result;
+    }
+
+    /** Checks that SEEKER agrees with STEPPER, which has the same
+     *  rotors and settings, for the first PRESSES key presses. */
+    private void checkSeek(Machine stepper, Machine seeker, int presses) {
+        for (int n = 1; n <= presses; n++) {
+            stepper.advance();
+            seeker.seek(n);
+            assertEquals("position " + n, stepper.rowOfRotors(),
+                    seeker.rowOfRotors());
+            assertEquals(n, seeker.position());
+        }
+        seeker.seek(presses / 3);
+        seeker.advance();
+        seeker.seek(presses);
+        assertEquals(stepper.rowOfRotors(), seeker.rowOfRotors());
+    }
+
+    @Test
+    public void testSeek() {
+        checkSeek(setUpMachine(), setUpMachine(), 50000);
+        checkSeek(movingMachine(alpha, "ZLYM", "ZM", "ZM", "ZM", "Q"),
+                movingMachine(alpha, "ZLYM", "ZM", "ZM", "ZM", "Q"), 50000);
+        checkSeek(movingMachine("ABC", "AAA", "C", "C", "C"),
+                movingMachine("ABC", "AAA", "C", "C", "C"), 1000);
+        checkSeek(movingMachine("ABCD", "DBCA", "AB", "", "BC", "A"),
+                movingMachine("ABCD", "DBCA", "AB", "", "BC", "A"), 5000);
+        checkSeek(movingMachine("ABCDE", "CEAB", "", "D", "", "E"),
+                movingMachine("ABCDE", "CEAB", "", "D", "", "E"), 5000);
+    }
+
+    @Test
+    public void testSeekNotchlessFastRotor() {
+        String twenty = "ABCDEFGHIJKLMNOPQRST";
+        String[] notches = {"C", "GM", "A", "T", "BK", "S", "E", "DQ",
+            "J", "O", ""};
+        checkSeek(movingMachine(twenty, "QBFAHTKCROD", notches),
+                movingMachine(twenty, "QBFAHTKCROD", notches), 2000);
+        Machine machine = movingMachine(twenty, "QBFAHTKCROD", notches);
+        machine.seek(Long.MAX_VALUE);
+        assertEquals(Long.MAX_VALUE, machine.position());
+    }
+
+    @Test
+    public void testSeekAfterAdvance() {
+        Machine stepper = setUpMachine();
+        Machine seeker = setUpMachine();
+        for (int i = 0; i < 1000; i++) {
+            seeker.convert(i % 26);
+        }
+        seeker.seek(0);
+        assertEquals(stepper.rowOfRotors(), seeker.rowOfRotors());
+        seeker.seek(Long.MAX_VALUE);
+        seeker.seek(700);
+        for (int i = 0; i < 700; i++) {
+            stepper.advance();
+        }
+        assertEquals(stepper.rowOfRotors(), seeker.rowOfRotors());
+    }
+
+    @Test
+    public void testConvertParallel() {
+        StringBuilder msg = new StringBuilder();
+        for (int i = 0; i < 300000; i++) {
+            msg.append(alpha.charAt((i * 7 + i / 26) % 26));
+        }
+        Machine sequential = setUpMachine();
+        Machine parallel = setUpMachine();
+        for (int i = 0; i < 100; i++) {
+            sequential.convert(i % 26);
+            parallel.convert(i % 26);
+        }
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            assertEquals(sequential.convert(msg.toString()),
+                    parallel.convertParallel(msg.toString(), pool));
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(sequential.rowOfRotors(), parallel.rowOfRotors());
+        assertEquals(sequential.position(), parallel.position());
+        assertEquals(sequential.convert("HIAWATHA"),
+                parallel.convert("HIAWATHA"));
+    }
+
+    @Test
+    public void testConvertParallelFallsBack() {
+        String[] notches = new String[45];
+        Arrays.fill(notches, "C");
+        String setting = "ABC".repeat(15);
+        Machine sequential = movingMachine("ABC", setting, notches);
+        Machine parallel = movingMachine("ABC", setting, notches);
+        String msg = "CAB".repeat(20000);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            assertEquals(sequential.convert(msg),
+                    parallel.convertParallel(msg, pool));
+            String row = parallel.rowOfRotors();
+            try {
+                parallel.convertParallel("ABCD", pool);
+                fail("converted a character outside the alphabet");
+            } catch (EnigmaException excp) {
+                assertEquals(row, parallel.rowOfRotors());
+            }
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(sequential.rowOfRotors(), parallel.rowOfRotors());
+    }
+
+    @Test
+    public void testSnapshotRestore() {
+        Machine machine = setUpMachine();
+        for (int i = 0; i < 500; i++) {
+            machine.convert(i % 26);
+        }
+        MachineState state = machine.snapshot();
+        String row = machine.rowOfRotors();
+        String first = machine.convert("HIAWATHAFROMHISSHOULDER");
+        assertEquals(523, machine.position());
+
+        machine.restore(state);
+        assertEquals(row, machine.rowOfRotors());
+        assertEquals(500, machine.position());
+        assertEquals(first, machine.convert("HIAWATHAFROMHISSHOULDER"));
+
+        machine.insertRotors(new String[] {"C", "Gamma", "I", "II", "V"});
+        machine.setRotors("BBBB");
+        machine.setPlugboard(new Permutation("(AB)", new Alphabet(alpha)));
+        machine.restore(state);
+        assertEquals(row, machine.rowOfRotors());
+        assertEquals(first, machine.convert("HIAWATHAFROMHISSHOULDER"));
+        machine.seek(0);
+        assertEquals("AAXLE", machine.rowOfRotors());
+        assertEquals("B Beta III IV I AXLE @0",
+                machine.snapshot().toString());
+    }
+
+    @Test
+    public void testComposedInnerRotors() {
+        Machine machine = setUpMachine();
+        String[] names = {"B", "Beta", "III", "IV", "I"};
+        MachineCursor cursor = machine.spec().cursor(names);
+        cursor.setRotors("AXLE");
+        cursor.setPlugboard(new Permutation("(YF) (HZ)",
+                new Alphabet(alpha)));
+        for (int i = 0; i < 20000; i++) {
+            assertEquals(cursor.convert(i * 11 % 26),
+                    machine.convert(i * 11 % 26));
+        }
+        MachineState state = machine.snapshot();
+        String expected = machine.convert("HIAWATHAFROMHISSHOULDER");
+        machine.seek(3);
+        machine.restore(state);
+        assertEquals(expected, machine.convert("HIAWATHAFROMHISSHOULDER"));
+
+        setRotors(NAVALA);
+        Machine still = new Machine(new Alphabet(alpha), 3, 0, allRotors);
+        still.insertRotors(new String[] {"B", "Beta", "Gamma"});
+        still.setRotors("XL");
+        still.setPlugboard(new Permutation("(YF)", new Alphabet(alpha)));
+        MachineCursor stillCursor = still.spec().cursor(
+                new String[] {"B", "Beta", "Gamma"});
+        stillCursor.setRotors("XL");
+        stillCursor.setPlugboard(new Permutation("(YF)",
+                new Alphabet(alpha)));
+        assertEquals(stillCursor.convert("HIAWATHA"),
+                still.convert("HIAWATHA"));
+    }
+
+    @Test
+    public void testNotchStepping() {
+        setRotors(NAVALA);
+        allRotors.add(new MovingRotor("N", new Permutation(NAVALA.get("II"),
+                new Alphabet(alpha)), ""));
+        Machine machine = new Machine(new Alphabet(alpha), 6, 4, allRotors);
+        String[][] stacks = {
+            {"B", "Beta", "VI", "VII", "VIII", "I"},
+            {"C", "Gamma", "III", "N", "VI", "VII"},
+        };
+        for (String[] names : stacks) {
+            machine.insertRotors(names);
+            machine.setRotors("AKYLE");
+            machine.setPlugboard(new Permutation("(YF) (HZ)",
+                    new Alphabet(alpha)));
+            MachineCursor cursor = machine.spec().cursor(names);
+            cursor.setRotors("AKYLE");
+            cursor.setPlugboard(new Permutation("(YF) (HZ)",
+                    new Alphabet(alpha)));
+            for (int i = 0; i < 20000; i++) {
+                assertEquals(cursor.convert(i % 26), machine.convert(i % 26));
+            }
+            for (int i = 1; i < names.length; i++) {
+                assertEquals(cursor.setting(i), machine.spec().alphabet()
+                        .toInt(machine.rowOfRotors().charAt(i)));
+            }
+        }
+    }
+
+    @Test
+    public void testRotorTree() {
+        Machine machine = setUpMachine();
+        machine.setRotorTreeMinimum(0);
+        MachineCursor cursor = machine.spec().cursor(
+                new String[] {"B", "Beta", "III", "IV", "I"});
+        cursor.setRotors("AXLE");
+        cursor.setPlugboard(new Permutation("(YF) (HZ)",
+                new Alphabet(alpha)));
+        for (int i = 0; i < 20000; i++) {
+            assertEquals(cursor.convert(i * 11 % 26),
+                    machine.convert(i * 11 % 26));
+        }
+        MachineState state = machine.snapshot();
+        String expected = machine.convert("HIAWATHAFROMHISSHOULDER");
+        machine.seek(3);
+        machine.restore(state);
+        assertEquals(expected, machine.convert("HIAWATHAFROMHISSHOULDER"));
+        machine.setRotorTreeMinimum(Machine.TREE_ROTORS);
+        machine.restore(state);
+        assertEquals(expected, machine.convert("HIAWATHAFROMHISSHOULDER"));
+    }
+
+    @Test
+    public void testPositionTable() {
+        Machine plain = setUpMachine();
+        Machine tabled = setUpMachine();
+        tabled.setPositionTableBudget(1 << 22);
+        assertTrue(tabled.positionTabled());
+        StringBuilder msg = new StringBuilder();
+        for (int i = 0; i < 40000; i++) {
+            msg.append((char) ('A' + (i * 7 + i / 26) % 26));
+        }
+        String text = msg.toString();
+        assertEquals(plain.convert(text), tabled.convert(text));
+        assertEquals(plain.rowOfRotors(), tabled.rowOfRotors());
+        assertEquals(plain.position(), tabled.position());
+        assertEquals(plain.convert(3), tabled.convert(3));
+        assertEquals(plain.convert("HIAWATHA"), tabled.convert("HIAWATHA"));
+
+        tabled.setPlugboard(new Permutation("(AB)", new Alphabet(alpha)));
+        plain.setPlugboard(new Permutation("(AB)", new Alphabet(alpha)));
+        assertEquals(plain.convert(text), tabled.convert(text));
+        assertEquals(plain.rowOfRotors(), tabled.rowOfRotors());
+    }
+
+    @Test
+    public void testPositionTableOverBudget() {
+        Machine plain = setUpMachine();
+        Machine tabled = setUpMachine();
+        tabled.setPositionTableBudget(1000);
+        assertFalse(tabled.positionTabled());
+        assertEquals(plain.convert("HIAWATHAFROMHISSHOULDER"),
+                tabled.convert("HIAWATHAFROMHISSHOULDER"));
+        assertEquals(plain.rowOfRotors(), tabled.rowOfRotors());
+    }
+
+    @Test
+    public void testPositionTableUnlimitedBudget() {
+        char[] chars = new char[2000];
+        int[] reflector = new int[chars.length];
+        int[] wiring = new int[chars.length];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = (char) (0x100 + i);
+            reflector[i] = i ^ 1;
+            wiring[i] = (7 * i + 3) % chars.length;
+        }
+        Alphabet big = new Alphabet(new String(chars));
+        ArrayList<Rotor> rotors = new ArrayList<Rotor>();
+        rotors.add(new Reflector("R", new Permutation(reflector, big)));
+        rotors.add(new MovingRotor("M1", new Permutation(wiring, big),
+                String.valueOf(chars[5])));
+        rotors.add(new MovingRotor("M2", new Permutation(wiring, big),
+                String.valueOf(chars[9])));
+        Machine plain = new Machine(big, 3, 2, rotors);
+        plain.insertRotors(new String[] {"R", "M1", "M2"});
+        plain.setPlugboard(new Permutation("", big));
+        String msg = new String(chars, 0, 40);
+        String expected = plain.convert(msg);
+
+        plain.insertRotors(new String[] {"R", "M1", "M2"});
+        plain.setPositionTableBudget(Long.MAX_VALUE);
+        assertFalse(plain.positionTabled());
+        assertEquals(expected, plain.convert(msg));
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testRestoreForeignState() {
+        setUpMachine().restore(setUpMachine().snapshot());
+    }
 
 }
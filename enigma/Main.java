@@ -2,11 +2,23 @@ package enigma;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
 
-import java.util.ArrayList;
-import java.util.NoSuchElementException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.Scanner;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import enigma.SessionWorker.Session;
 
 import static enigma.EnigmaException.*;
 
@@ -22,10 +34,49 @@ public final class Main {
      *  containing messages.  Otherwise, input comes from the standard
      *  input.  ARGS[2] is optional; when present, it names an output
      *  file for processed messages.  Otherwise, output goes to the
-     *  standard output. Exits normally if there are no errors in the input;
+     *  standard output. When both files are given, the input file is
+     *  memory-mapped and the output is buffered in a direct buffer.
+     *  The configuration file may also be an image compiled by
+     *  "--compile CONF [-o IMAGE]", which writes the image of
+     *  configuration file CONF to IMAGE (by default, CONF with its
+     *  extension replaced by .enigmab) and processes no messages.
+     *  "--serve ADDRESS CONF..." instead runs a Server on ADDRESS, a
+     *  loopback port or a Unix domain socket path, with configuration
+     *  files CONF..., until the process is killed.
+     *  ARGS may start with "--jobs N", in which case the sessions that
+     *  begin at each settings line are converted concurrently by N
+     *  threads, each with its own machine, and written in order.
+     *  "--manifest FILE", which may also follow "--jobs N", runs every
+     *  job listed in FILE (see Manifest) in this process, N at a time
+     *  (by default, one per processor), and reports on each.
+     *  Exits normally if there are no errors in the input;
      *  otherwise with code 1. */
     public static void main(String... args) {
         try {
+            if (args.length > 0 && args[0].equals("--compile")) {
+                compile(args);
+                return;
+            }
+            int manifest = args.length > 2 && args[0].equals("--jobs")
+                    ? 2 : 0;
+            if (args.length > manifest
+                    && args[manifest].equals("--manifest")) {
+                if (args.length != manifest + 2) {
+                    throw error("Usage: [--jobs N] --manifest FILE");
+                }
+                int jobs = manifest > 0 ? parseJobs(args[1])
+                        : Runtime.getRuntime().availableProcessors();
+                System.exit(new Manifest(args[manifest + 1]).run(jobs,
+                        System.out, System.err));
+            }
+            if (args.length > 0 && args[0].equals("--serve")) {
+                if (args.length < 3) {
+                    throw error("Usage: --serve ADDRESS CONF...");
+                }
+                new Server(args[1], Arrays.copyOfRange(args, 2,
+                        args.length)).serve();
+                return;
+            }
             new Main(args).process();
             return;
         } catch (EnigmaException excp) {
@@ -34,40 +85,91 @@ public final class Main {
         System.exit(1);
     }
 
+    /** Compile the configuration file named in ARGS, which has the form
+     *  "--compile CONF [-o IMAGE]", into an image. */
+    private static void compile(String[] args) {
+        String image;
+        if (args.length == 2) {
+            String name = args[1];
+            int dot = name.lastIndexOf('.');
+            if (dot <= name.lastIndexOf(File.separatorChar)) {
+                dot = name.length();
+            }
+            image = name.substring(0, dot) + IMAGE_EXTENSION;
+        } else if (args.length == 4 && args[2].equals("-o")) {
+            image = args[3];
+        } else {
+            throw error("Usage: --compile CONF [-o IMAGE]");
+        }
+        ConfigImage.compile(args[1], image);
+    }
+
     /** Check ARGS and open the necessary files (see comment on main). */
     Main(String[] args) {
+        if (args.length > 0 && args[0].equals("--jobs")) {
+            _jobs = parseJobs(args.length > 1 ? args[1] : "");
+            args = Arrays.copyOfRange(args, 2, args.length);
+        }
         if (args.length < 1 || args.length > 3) {
             throw error("Only 1, 2, or 3 command-line arguments allowed");
         }
 
-        _config = getInput(args[0]);
+        _config = readFile(args[0]);
 
-        if (args.length > 1) {
-            _input = getInput(args[1]);
+        if (args.length > 2) {
+            _input = new MappedInput(args[1]);
+            _output = new GroupedWriter(new ChannelOutput(args[2]), false);
+        } else if (args.length > 1) {
+            _input = new ScannerLines(getInput(args[1]));
+            _output = new GroupedWriter(System.out, false);
         } else {
-            _input = new Scanner(System.in);
+            _input = new ScannerLines(new Scanner(System.in));
+            _output = new GroupedWriter(System.out,
+                    System.console() != null);
         }
+    }
 
-        if (args.length > 2) {
-            _output = getOutput(args[2]);
-        } else {
-            _output = System.out;
+    /** A run converting the file named INPUT into the file named OUTPUT
+     *  with MACHINE, as a job of a Manifest. */
+    Main(Machine machine, String input, String output) {
+        _machine = machine;
+        _input = new MappedInput(input);
+        try {
+            _output = new GroupedWriter(new ChannelOutput(output), false);
+        } catch (EnigmaException excp) {
+            _input.close();
+            throw excp;
         }
     }
 
-    /** Return a Scanner reading from the file named NAME. */
-    private Scanner getInput(String name) {
+    /** Return the number of jobs given by TEXT, which must be a
+     *  positive integer. */
+    private static int parseJobs(String text) {
         try {
-            return new Scanner(new File(name));
-        } catch (IOException excp) {
+            int jobs = Integer.parseInt(text);
+            if (jobs > 0) {
+                return jobs;
+            }
+        } catch (NumberFormatException excp) {
+            /* Reported below. */
+        }
+        throw error("--jobs needs a positive number of jobs, not '%s'",
+                text);
+    }
+
+    /** Return the contents of the file named NAME. */
+    private byte[] readFile(String name) {
+        try {
+            return Files.readAllBytes(Path.of(name));
+        } catch (IOException | InvalidPathException excp) {
             throw error("could not open %s", name);
         }
     }
 
-    /** Return a PrintStream writing to the file named NAME. */
-    private PrintStream getOutput(String name) {
+    /** Return a Scanner reading from the file named NAME. */
+    private Scanner getInput(String name) {
         try {
-            return new PrintStream(new File(name));
+            return new Scanner(new File(name));
         } catch (IOException excp) {
             throw error("could not open %s", name);
         }
@@ -76,18 +178,163 @@ public final class Main {
     /** Configure an Enigma machine from the contents of configuration
      *  file _config and apply it to the messages in _input, sending the
      *  results to _output. */
-    private void process() {
-        Machine m = readConfig();
-        checkFirstSetting();
-        while (_input.hasNext("[\\*]")) {
-            setUp(m, checkNextLine());
+    void process() {
+        if (_jobs > 0) {
+            processConcurrently();
+            return;
+        }
+        try {
+            SessionWorker worker = new SessionWorker(readConfig(), _output);
+            checkFirstSetting();
+            while (_input.atSettings()) {
+                setUp(worker, checkNextLine());
+            }
+            checkRemainingLines();
+        } finally {
+            _output.flush();
+        }
+    }
+
+    /** Does what process does, with the sessions that begin at each
+     *  settings line converted by _jobs threads at once. A session
+     *  begins afresh from its settings line, so each thread has a
+     *  machine of its own, all on one spec. This thread reads each
+     *  session in pieces of about PIECE_CHARS characters of message
+     *  lines and writes their output in the order they were read,
+     *  keeping at most PIECES_PER_JOB of them per thread in hand. A
+     *  piece that continues a session is converted once the piece
+     *  before it is, from the state of the machine that converted it. */
+    private void processConcurrently() {
+        ExecutorService pool = Executors.newFixedThreadPool(_jobs);
+        ArrayDeque<Future<Session>> pending = new ArrayDeque<>();
+        try {
+            MachineSpec spec = readSpec(_config);
+            BlockingQueue<SessionWorker> workers =
+                new ArrayBlockingQueue<>(_jobs);
+            for (int i = 0; i < _jobs; i += 1) {
+                workers.add(new SessionWorker(new Machine(spec)));
+            }
+            checkFirstSetting();
+            CompletableFuture<Session> last = null;
+            while (true) {
+                Session piece;
+                boolean continued;
+                try {
+                    continued = last != null && _input.atMessage();
+                    if (!continued && !_input.atSettings()) {
+                        break;
+                    }
+                    piece = readPiece(!continued);
+                } catch (RuntimeException excp) {
+                    writeSessions(pending, 0);
+                    throw excp;
+                }
+                if (continued) {
+                    last = last.thenApplyAsync(previous ->
+                            convertPiece(workers, piece, previous), pool);
+                } else {
+                    last = CompletableFuture.supplyAsync(() ->
+                            convertPiece(workers, piece, null), pool);
+                }
+                pending.add(last);
+                writeSessions(pending, PIECES_PER_JOB * _jobs);
+            }
+            writeSessions(pending, 0);
+            checkRemainingLines();
+        } finally {
+            pool.shutdownNow();
+            _output.flush();
+        }
+    }
+
+    /** Return the next piece of the input: the settings line, if START,
+     *  and then the message lines that follow, until they hold at least
+     *  PIECE_CHARS characters or the session ends. */
+    private Session readPiece(boolean start) {
+        Session piece = new Session();
+        if (start) {
+            String line = _input.nextLine();
+            while (line.length() == 0) {
+                line = _input.nextLine();
+                piece.blankLines += 1;
+            }
+            piece.settings = line;
+        }
+        int chars = 0;
+        while (chars < PIECE_CHARS && _input.atMessage()) {
+            String line = _input.nextLine();
+            piece.lines.add(line);
+            chars += line.length();
+        }
+        return piece;
+    }
+
+    /** Convert PIECE with one of WORKERS, continuing from the machine
+     *  state at the end of PREVIOUS, the piece before it in its session,
+     *  unless PREVIOUS is null. Return PIECE. */
+    private static Session convertPiece(BlockingQueue<SessionWorker> workers,
+                                        Session piece, Session previous) {
+        if (previous != null && previous.error != null) {
+            piece.output = new byte[0];
+            return piece;
+        }
+        SessionWorker worker;
+        try {
+            worker = workers.take();
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+            throw error("interrupted while converting");
+        }
+        try {
+            if (previous != null) {
+                worker.machine().restore(previous.end);
+            }
+            worker.run(piece);
+            if (piece.error == null) {
+                piece.end = worker.machine().snapshot();
+            }
+            return piece;
+        } finally {
+            workers.add(worker);
+        }
+    }
+
+    /** Write the output of the sessions at the front of PENDING, waiting
+     *  for them as needed, until no more than LIMIT are left. If a
+     *  session failed, its output up to the failure is written and its
+     *  error is thrown. */
+    private void writeSessions(ArrayDeque<Future<Session>> pending,
+                               int limit) {
+        while (pending.size() > limit) {
+            Session session;
+            try {
+                session = pending.remove().get();
+            } catch (InterruptedException excp) {
+                Thread.currentThread().interrupt();
+                throw error("interrupted while converting");
+            } catch (ExecutionException excp) {
+                throw error("could not convert: %s", excp.getCause());
+            }
+            _output.write(session.output);
+            if (session.error != null) {
+                throw session.error;
+            }
+        }
+    }
+
+    /** Closes my input and output, which must not be the standard
+     *  ones. */
+    void close() {
+        try {
+            _output.close();
+        } finally {
+            _input.close();
         }
-        checkRemainingLines();
     }
 
     /** Checks if there is a proper first setting in the input. */
     private void checkFirstSetting() {
-        if (!_input.hasNext("[\\*]")) {
+        if (!_input.atSettings()) {
             throw new EnigmaException("Your input "
                     + "does not start with a *, "
                     + "and is not formatted correctly");
@@ -100,7 +347,7 @@ public final class Main {
         String line = _input.nextLine();
         while (line.length() == 0) {
             line = _input.nextLine();
-            _output.println();
+            _output.newLine();
         }
         return line;
     }
@@ -111,7 +358,7 @@ public final class Main {
         while (_input.hasNextLine()) {
             String line = _input.nextLine();
             if (line.length() == 0 || line.matches("[ ]*")) {
-                _output.println();
+                _output.newLine();
             } else {
                 throw new EnigmaException("Your format"
                         + " does not match properly! "
@@ -121,162 +368,89 @@ public final class Main {
     }
 
     /** Return an Enigma machine configured from the contents of configuration
-     *  file _config. */
+     *  file _config, or _machine if I was given one. */
     private Machine readConfig() {
-        try {
-            _alphabet = new Alphabet(_config.next());
-            ArrayList<Rotor> allRotors = new ArrayList<Rotor>();
-            int numRotors = _config.nextInt();
-            int pawls = _config.nextInt();
-
-            while (_config.hasNext()) {
-                allRotors.add(readRotor());
-            }
-
-            return new Machine(_alphabet, numRotors, pawls, allRotors);
-        } catch (NoSuchElementException excp) {
-            throw error("configuration file truncated");
+        if (_machine != null) {
+            return _machine;
         }
+        return readConfig(_config);
     }
 
-    /** Creates a new Rotor based off of a name, type, and cycles.
-     * @return a new Rotor based off the specifications
-     * @param name is the name of the new Rotor
-     * @param type is the type and notches (if needed) of the new Rotor
-     * @param cycles is the cycles of the new Rotor*/
-    private Rotor createNewRotor(String name, String type, String cycles) {
-        EnigmaException exception = new EnigmaException("The rotor of name "
-                + name + " " + " and cycles " + cycles
-                + " has the incorrect type of " + type);
-        Permutation perm = new Permutation(cycles, _alphabet);
-        if (type.length() == 1) {
-            if (type.equals("N")) {
-                return new FixedRotor(name, perm);
-            } else if (type.equals("R")) {
-                return new Reflector(name, perm);
-            } else if (type.equals("M")) {
-                return new MovingRotor(name, perm, "");
-            } else {
-                throw exception;
-            }
-        } else if (type.length() > 1 && type.charAt(0) == 'M') {
-            return new MovingRotor(name, perm, type.substring(1));
-        } else {
-            throw exception;
-        }
-    }
-
-    /** Return a rotor, reading its description from _config. */
-    private Rotor readRotor() {
-        try {
-            String name = _config.next();
-            String type = _config.next();
-            String cycles = "";
-            while (_config.hasNext("(\\([^ *\\(\\)]+\\))+")) {
-                cycles += (_config.next() + " ");
-            }
-            return createNewRotor(name, type, cycles);
-
-        } catch (NoSuchElementException excp) {
-            throw error("bad rotor description");
-        }
+    /** Return an Enigma machine configured from CONFIG, the contents of
+     *  a configuration file, which is either its text or a compiled
+     *  image. */
+    static Machine readConfig(byte[] config) {
+        return new Machine(readSpec(config));
     }
 
-    /** Set M according to the specification given on SETTINGS,
-     *  which must have the format specified in the assignment. */
-    private void setUp(Machine M, String settings) {
-        if (!(settings.charAt(0) == '*')) {
-            throw new EnigmaException("You did not "
-                    + "start your input with a *!");
+    /** Return the spec of the machines configured from CONFIG, the
+     *  contents of a configuration file, which is either its text or a
+     *  compiled image. */
+    static MachineSpec readSpec(byte[] config) {
+        ConfigLoadEvent event = new ConfigLoadEvent();
+        event.begin();
+        MachineSpec spec;
+        int rotors;
+        boolean image = ConfigImage.isImage(config);
+        if (image) {
+            ConfigImage reader = new ConfigImage(config);
+            rotors = reader.rotors().size();
+            spec = new MachineSpec(reader.alphabet(), reader.numRotors(),
+                    reader.pawls(), reader.rotors());
+        } else {
+            ConfigReader reader = new ConfigReader(
+                    new String(config, Charset.defaultCharset()));
+            rotors = reader.rotors().size();
+            spec = new MachineSpec(reader.alphabet(), reader.numRotors(),
+                    reader.pawls(), reader.rotors());
         }
-        settings = settings.replaceFirst("\\* +", "");
-        String[] remaining = settings.split(" +");
-        String[] rotors = new String[M.numRotors()];
-        String cycles = "";
-        for (int i = 0; i < remaining.length; i++) {
-            if (i < M.numRotors()) {
-                if (!M.hasRotor(remaining[i])) {
-                    throw new EnigmaException(remaining[i]
-                            + " is not a rotor that you "
-                            + "passed in to all Rotors!");
-                }
-                rotors[i] = remaining[i];
-            } else if (i == M.numRotors()) {
-                if (M.hasRotor(remaining[i])) {
-                    throw new EnigmaException("That is too many"
-                            + " rotors! You are only "
-                            + "supposed to have " + M.numRotors() + " rotors");
-                }
-                checkRotors(rotors);
-                M.insertRotors(rotors);
-                M.setRotors(remaining[i]);
-            } else if (i > M.numRotors()
-                    && remaining[i].matches(
-                            "\\([^ *\\(\\)]+\\)")) {
-                cycles += (remaining[i] + " ");
-            }
+        if (event.shouldCommit()) {
+            event.image = image;
+            event.rotorCount = rotors;
+            event.alphabetSize = spec.alphabet().size();
+            event.commit();
         }
+        return spec;
+    }
 
-        ArrayList<String> messages = new ArrayList<String>();
-
-        M.setPlugboard(new Permutation(cycles, _alphabet));
-
-        while (_input.hasNext("[^\\*]+")) {
-            messages.add(_input.nextLine());
-        }
+    /** Set the machine of WORKER according to the specification given
+     *  on SETTINGS, which must have the format specified in the
+     *  assignment. Then convert and print the message lines that follow
+     *  it, one line at a time, so that no more than one line is held in
+     *  memory. */
+    private void setUp(SessionWorker worker, String settings) {
+        worker.setUp(settings);
 
-        for (int i = 0; i < messages.size(); i++) {
-            String msg = messages.get(i);
-            msg = msg.replaceAll("[ ]+", "");
-            msg = M.convert(msg);
-            printMessageLine(msg);
+        while (_input.atMessage()) {
+            worker.printMessageLine(_input.nextLine());
         }
 
     }
 
-    /** Checks whether the rotors are of the correct number
-     * and of the correct format.
-     * @param rotors holds the names of each of the rotors*/
-    private void checkRotors(String[] rotors) {
-        for (int i = 0; i < rotors.length; i++) {
-            if (rotors[i] == null) {
-                throw new EnigmaException("You do not have "
-                        + "the correct numnber of rotors!");
-            } else if (!rotors[i].matches("[^ \\*\\(\\)]+")) {
-                throw new EnigmaException("Your input for the name "
-                        + " of the rotor is " + _input.next()
-                        + ", which is not allowed!");
-            }
-        }
-    }
+    /** Number of threads converting sessions at once, or 0 to convert
+     *  them one after another on this thread. */
+    private int _jobs;
 
-    /** Print MSG in groups of five (except that the last group may
-     *  have fewer letters). */
-    private void printMessageLine(String msg) {
-        while (!msg.isEmpty() || !msg.matches(" *")) {
-            int length = msg.length();
-            while (length > 0) {
-                if (length >= 5) {
-                    length = 5;
-                }
-                String result = msg.substring(0, length);
-                _output.print(result + " ");
-                msg = msg.substring(length);
-                length = msg.length();
-            }
-        }
-        _output.println();
-    }
+    /** Number of pieces of sessions per thread that may be read ahead
+     *  of the output. */
+    private static final int PIECES_PER_JOB = 4;
 
-    /** Alphabet used in this machine. */
-    private Alphabet _alphabet;
+    /** Number of characters of message lines after which a piece of a
+     *  session is handed to a thread. */
+    private static final int PIECE_CHARS = 1 << 16;
 
     /** Source of input messages. */
-    private Scanner _input;
+    private InputLines _input;
+
+    /** Machine given to me in place of a configuration, or null. */
+    private Machine _machine;
+
+    /** Contents of the machine configuration file. */
+    private byte[] _config;
 
-    /** Source of machine configuration. */
-    private Scanner _config;
+    /** Extension given to compiled configuration images by default. */
+    static final String IMAGE_EXTENSION = ".enigmab";
 
     /** File for encoded/decoded messages. */
-    private PrintStream _output;
+    private GroupedWriter _output;
 }
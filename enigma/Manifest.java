@@ -0,0 +1,213 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static enigma.EnigmaException.*;
+
+/** A list of jobs, each converting one input file into one output file
+ *  with one configuration file, as Main does when given all three, run
+ *  together in one process. Each non-blank line of a manifest file that
+ *  does not start with "#" names the configuration, input and output
+ *  files of one job, separated by whitespace. Relative names are taken
+ *  from the directory of the manifest file.
+ *
+ *  Each configuration file is read once, and the machines built from
+ *  it are kept and reused by later jobs with the same configuration,
+ *  since every settings line sets a machine up afresh. The work done
+ *  with each configuration is counted in its Metrics.
+ *  @author Ria Vora
+ */
+class Manifest {
+
+    /** The jobs listed in the manifest file named NAME. */
+    Manifest(String name) {
+        Path path;
+        String text;
+        try {
+            path = Path.of(name);
+            text = new String(Files.readAllBytes(path),
+                    Charset.defaultCharset());
+        } catch (IOException | InvalidPathException excp) {
+            throw error("could not open %s", name);
+        }
+        Path dir = path.toAbsolutePath().getParent();
+        _jobs = new ArrayList<String[]>();
+        String[] lines = text.split("\r?\n|\r");
+        for (int i = 0; i < lines.length; i++) {
+            String line = lines[i].strip();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] job = line.split("\\s+");
+            if (job.length != 3) {
+                throw error("%s, line %d: expected a configuration, "
+                        + "an input and an output file", name, i + 1);
+            }
+            _jobs.add(new String[] {
+                resolve(dir, job[0]), resolve(dir, job[1]),
+                resolve(dir, job[2])
+            });
+        }
+    }
+
+    /** Return the number of jobs. */
+    int size() {
+        return _jobs.size();
+    }
+
+    /** Runs my jobs, at most JOBS at a time, printing one line on OUT
+     *  for each, in order, saying whether it succeeded, in the manner of
+     *  the testing scripts. The message of each error goes to ERR.
+     *  Return 0 if every job succeeded, and otherwise 1. */
+    int run(int jobs, PrintStream out, PrintStream err) {
+        ExecutorService pool = Executors.newFixedThreadPool(jobs);
+        try {
+            ArrayList<Future<String>> results = new ArrayList<>();
+            for (String[] job : _jobs) {
+                results.add(pool.submit(() -> runJob(job)));
+            }
+            int code = 0;
+            for (int i = 0; i < results.size(); i++) {
+                String label = label(_jobs.get(i)[1]);
+                String error;
+                try {
+                    error = results.get(i).get();
+                } catch (InterruptedException excp) {
+                    Thread.currentThread().interrupt();
+                    throw error("interrupted while running jobs");
+                } catch (ExecutionException excp) {
+                    err.printf("%s: %s%n", label, excp.getCause());
+                    out.printf("%s: ERROR (uncaught exception)%n", label);
+                    code = 1;
+                    continue;
+                }
+                if (error == null) {
+                    out.printf("%s: OK%n", label);
+                } else {
+                    err.printf("%s: Error: %s%n", label, error);
+                    out.printf("%s: ERROR (exit code 1)%n", label);
+                    code = 1;
+                }
+            }
+            out.flush();
+            err.flush();
+            return code;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /** Runs JOB, returning null if it succeeds and the message of its
+     *  error if not. */
+    private String runJob(String[] job) {
+        Config config = _configs.computeIfAbsent(job[0], Config::new);
+        Machine machine;
+        try {
+            machine = config.take();
+        } catch (EnigmaException excp) {
+            return excp.getMessage();
+        }
+        try {
+            Main main = new Main(machine, job[1], job[2]);
+            try {
+                main.process();
+            } finally {
+                main.close();
+            }
+            return null;
+        } catch (EnigmaException excp) {
+            return excp.getMessage();
+        } finally {
+            config.giveBack(machine);
+        }
+    }
+
+    /** Return NAME taken from directory DIR. */
+    private static String resolve(Path dir, String name) {
+        try {
+            return dir.resolve(name).toString();
+        } catch (InvalidPathException excp) {
+            return name;
+        }
+    }
+
+    /** Return the name of the input file NAME as the testing scripts
+     *  report it: its directory's last part and its own. */
+    private static String label(String name) {
+        Path path = Path.of(name);
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent == null || parent.getFileName() == null) {
+            return path.getFileName().toString();
+        }
+        return parent.getFileName() + "/" + path.getFileName();
+    }
+
+    /** A configuration file, read once, with its idle machines. */
+    private static class Config {
+
+        /** The configuration file named NAME, which is read and parsed
+         *  now. */
+        Config(String name) {
+            _name = name;
+            try {
+                _spec = Main.readSpec(Files.readAllBytes(Path.of(name)));
+            } catch (IOException | InvalidPathException excp) {
+                _error = String.format("could not open %s", name);
+            } catch (EnigmaException excp) {
+                _error = excp.getMessage();
+            }
+        }
+
+        /** Return an idle machine built from me, building a new one if
+         *  none is idle. */
+        Machine take() {
+            if (_error != null) {
+                throw new EnigmaException(_error);
+            }
+            Machine machine = _idle.poll();
+            if (machine != null) {
+                return machine;
+            }
+            machine = new Machine(_spec);
+            machine.setMetrics(Metrics.forConfig(_name));
+            return machine;
+        }
+
+        /** Makes MACHINE, built from me, idle again. */
+        void giveBack(Machine machine) {
+            _idle.add(machine);
+        }
+
+        /** The name of the file. */
+        private final String _name;
+
+        /** The spec of the machines built from me, shared by them all. */
+        private MachineSpec _spec;
+
+        /** The message of the error in reading me, or null. */
+        private String _error;
+
+        /** Machines built from me that no job is using. */
+        private final ConcurrentLinkedQueue<Machine> _idle =
+            new ConcurrentLinkedQueue<>();
+    }
+
+    /** The configuration, input and output files of each job. */
+    private final ArrayList<String[]> _jobs;
+
+    /** The configuration files read so far, by name. */
+    private final ConcurrentHashMap<String, Config> _configs =
+        new ConcurrentHashMap<>();
+}
@@ -0,0 +1,124 @@
+package enigma;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the Manifest class.
+ *  @author Ria Vora
+ */
+public class ManifestTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** A small configuration with one rotor of each kind. */
+    private static final String CONFIG = "ABCD\n 3 1\n"
+            + " R R (AB)(CD)\n F N\t(ABC)\n M MAC (AD) (B)\n"
+            + "    (C)\n";
+
+    /** Line separator of the output. */
+    private static final String NL = System.lineSeparator();
+
+    /** Writes TEXT into the file NAME in DIR. */
+    private void write(Path dir, String name, String text)
+        throws IOException {
+        Files.write(dir.resolve(name), text.getBytes());
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testRun() throws IOException {
+        Path dir = Files.createTempDirectory("enigma");
+        write(dir, "small.conf", CONFIG);
+        write(dir, "one.in", "* R F M AA\nABCD\n");
+        write(dir, "two.in", "* R F M AA\nABCD\n* R F M AB\nDDD\n");
+        write(dir, "bad.in", "ABCD\n");
+        write(dir, "jobs", "# name input output\n"
+                + "small.conf one.in one.out\n\n"
+                + "small.conf  two.in\ttwo.out\n"
+                + "small.conf bad.in bad.out\n"
+                + "none.conf one.in none.out\n");
+        Manifest manifest = new Manifest(dir.resolve("jobs").toString());
+        assertEquals(4, manifest.size());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        assertEquals(1, manifest.run(2, new PrintStream(out),
+                new PrintStream(err)));
+        String name = dir.getFileName().toString();
+        assertEquals(name + "/one.in: OK" + NL
+                + name + "/two.in: OK" + NL
+                + name + "/bad.in: ERROR (exit code 1)" + NL
+                + name + "/one.in: ERROR (exit code 1)" + NL,
+                out.toString());
+        assertTrue(err.toString().contains("could not open"));
+
+        Machine machine = Main.readConfig(CONFIG.getBytes());
+        new SettingsParser(machine).apply("* R F M AA");
+        String first = machine.convert("ABCD");
+        new SettingsParser(machine).apply("* R F M AB");
+        String second = machine.convert("DDD");
+        assertEquals(first + " " + NL,
+                Files.readString(dir.resolve("one.out")));
+        assertEquals(first + " " + NL + second + " " + NL,
+                Files.readString(dir.resolve("two.out")));
+    }
+
+    @Test
+    public void testConfigParsedOnce() throws IOException {
+        Path dir = Files.createTempDirectory("enigma");
+        write(dir, "small.conf", CONFIG);
+        StringBuilder jobs = new StringBuilder();
+        for (int i = 0; i < 8; i++) {
+            write(dir, i + ".in", "* R F M AA\nABCD\n");
+            jobs.append("small.conf ").append(i).append(".in ")
+                .append(i).append(".out\n");
+        }
+        write(dir, "jobs", jobs.toString());
+        Manifest manifest = new Manifest(dir.resolve("jobs").toString());
+        Path events = Files.createTempFile("enigma", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("enigma.ConfigLoad");
+            recording.start();
+            assertEquals(0, manifest.run(4,
+                    new PrintStream(new ByteArrayOutputStream()),
+                    new PrintStream(new ByteArrayOutputStream())));
+            recording.stop();
+            recording.dump(events);
+            int loads = 0;
+            for (RecordedEvent event : RecordingFile.readAllEvents(events)) {
+                if (event.getEventType().getName()
+                        .equals("enigma.ConfigLoad")) {
+                    loads += 1;
+                }
+            }
+            assertEquals(1, loads);
+        } finally {
+            Files.deleteIfExists(events);
+        }
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testBadLine() throws IOException {
+        Path dir = Files.createTempDirectory("enigma");
+        write(dir, "jobs", "small.conf one.in\n");
+        new Manifest(dir.resolve("jobs").toString());
+    }
+
+}
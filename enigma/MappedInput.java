@@ -0,0 +1,249 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/** Input lines read directly from a memory-mapped file. The file is
+ *  mapped one window at a time, so it may be larger than 2 GB. Lines
+ *  and tokens are split as a Scanner over the file would split them:
+ *  lines end at "\r\n" or at any of "\n", "\r", "\u2028", "\u2029"
+ *  and "\u0085", and tokens are separated by Java whitespace. Beyond
+ *  ASCII, these are only recognized in UTF-8 and ISO-8859-1; in other
+ *  charsets, a line or token may run past them.
+ *  @author Ria Vora
+ */
+class MappedInput implements InputLines {
+
+    /** The lines of the file named NAME, in the default charset. */
+    MappedInput(String name) {
+        this(name, WINDOW_SIZE, Charset.defaultCharset());
+    }
+
+    /** The lines of the file named NAME, in CHARSET, mapped in windows
+     *  of WINDOWSIZE bytes. */
+    MappedInput(String name, int windowSize, Charset charset) {
+        _windowSize = windowSize;
+        _charset = charset;
+        _utf8 = charset.equals(StandardCharsets.UTF_8);
+        _latin1 = charset.equals(StandardCharsets.ISO_8859_1);
+        try {
+            _channel = FileChannel.open(Path.of(name),
+                    StandardOpenOption.READ);
+            _size = _channel.size();
+        } catch (IOException | RuntimeException excp) {
+            throw new EnigmaException("could not open " + name);
+        }
+    }
+
+    @Override
+    public boolean hasNextLine() {
+        return _pos < _size;
+    }
+
+    @Override
+    public String nextLine() {
+        if (!hasNextLine()) {
+            throw new EnigmaException("There are no more input lines");
+        }
+        int length = 0;
+        boolean ascii = true;
+        long p = _pos;
+        int end = 0;
+        while (p < _size && (end = lineEnd(p)) == 0) {
+            byte b = byteAt(p);
+            if (length == _line.length) {
+                _line = Arrays.copyOf(_line, 2 * length);
+            }
+            _line[length] = b;
+            ascii &= b >= 0;
+            length += 1;
+            p += 1;
+        }
+        _pos = p + end;
+        return new String(_line, 0, length, ascii
+                ? StandardCharsets.ISO_8859_1 : _charset);
+    }
+
+    @Override
+    public boolean atSettings() {
+        findToken();
+        return _tokenEnd - _tokenStart == 1 && byteAt(_tokenStart) == '*';
+    }
+
+    @Override
+    public boolean atMessage() {
+        findToken();
+        if (_tokenStart == _tokenEnd) {
+            return false;
+        }
+        for (long p = _tokenStart; p < _tokenEnd; p++) {
+            if (byteAt(p) == '*') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void close() {
+        try {
+            _channel.close();
+        } catch (IOException excp) {
+            throw new EnigmaException("could not close input file");
+        }
+    }
+
+    /** Sets _tokenStart and _tokenEnd to the bounds of the next token,
+     *  which are equal if there is none. Keeps the last ones found if
+     *  they are still ahead of the current line. */
+    private void findToken() {
+        if (_tokenFrom >= 0 && _tokenFrom <= _pos && _pos <= _tokenStart) {
+            return;
+        }
+        long p = _pos;
+        int space;
+        while (p < _size && (space = whitespace(p)) > 0) {
+            p += space;
+        }
+        _tokenFrom = _pos;
+        _tokenStart = p;
+        while (p < _size && whitespace(p) == 0) {
+            p += 1;
+        }
+        _tokenEnd = p;
+    }
+
+    /** Return the number of bytes of the line separator at position P,
+     *  or 0 if there is none. */
+    private int lineEnd(long p) {
+        byte b = byteAt(p);
+        if (b == '\n') {
+            return 1;
+        } else if (b == '\r') {
+            return p + 1 < _size && byteAt(p + 1) == '\n' ? 2 : 1;
+        } else if (b >= 0) {
+            return 0;
+        }
+        int length = encodedLength(p);
+        int c = decode(p, length);
+        return c == '\u0085' || c == '\u2028' || c == '\u2029' ? length : 0;
+    }
+
+    /** Return the number of bytes of the whitespace character at
+     *  position P, or 0 if it is not whitespace. */
+    private int whitespace(long p) {
+        byte b = byteAt(p);
+        if (b >= 0) {
+            return Character.isWhitespace((char) b) ? 1 : 0;
+        }
+        int length = encodedLength(p);
+        return Character.isWhitespace(decode(p, length)) ? length : 0;
+    }
+
+    /** Return the number of bytes of the non-ASCII character starting
+     *  at position P, if it is one that I decode, or 1 if not. */
+    private int encodedLength(long p) {
+        if (!_utf8) {
+            return 1;
+        }
+        int lead = byteAt(p) & 0xff;
+        int length = lead >= 0xe0 && lead < 0xf0 ? 3
+            : lead >= 0xc0 && lead < 0xe0 ? 2 : 1;
+        if (p + length > _size) {
+            return 1;
+        }
+        for (int i = 1; i < length; i++) {
+            if ((byteAt(p + i) & 0xc0) != 0x80) {
+                return 1;
+            }
+        }
+        return length;
+    }
+
+    /** Return the character encoded in the LENGTH bytes at position P,
+     *  or -1 if they are not a character that I decode. */
+    private int decode(long p, int length) {
+        int lead = byteAt(p) & 0xff;
+        if (_latin1) {
+            return lead;
+        } else if (length == 2) {
+            return (lead & 0x1f) << 6 | byteAt(p + 1) & 0x3f;
+        } else if (length == 3) {
+            return (lead & 0x0f) << 12 | (byteAt(p + 1) & 0x3f) << 6
+                | byteAt(p + 2) & 0x3f;
+        }
+        return -1;
+    }
+
+    /** Return the byte at position P of the file, mapping the window
+     *  that starts there if it is not in the current one. */
+    private byte byteAt(long p) {
+        long offset = p - _windowStart;
+        if (_window == null || offset < 0 || offset >= _window.limit()) {
+            map(p);
+            offset = 0;
+        }
+        return _window.get((int) offset);
+    }
+
+    /** Maps the window of the file starting at position P. */
+    private void map(long p) {
+        try {
+            long length = Math.min(_windowSize, _size - p);
+            _window = _channel.map(FileChannel.MapMode.READ_ONLY,
+                    p, length);
+            _windowStart = p;
+        } catch (IOException excp) {
+            throw new EnigmaException("could not read input file");
+        }
+    }
+
+    /** Size of the windows mapped unless another is given. */
+    static final int WINDOW_SIZE = 1 << 26;
+
+    /** Size of the windows I map. */
+    private final int _windowSize;
+
+    /** The charset of the file. */
+    private final Charset _charset;
+
+    /** Whether _charset is UTF-8. */
+    private final boolean _utf8;
+
+    /** Whether _charset is ISO-8859-1. */
+    private final boolean _latin1;
+
+    /** The file being read. */
+    private final FileChannel _channel;
+
+    /** The size of the file in bytes. */
+    private final long _size;
+
+    /** The mapped window of the file. */
+    private MappedByteBuffer _window;
+
+    /** Position in the file of the start of _window. */
+    private long _windowStart;
+
+    /** Position in the file of the start of the next line. */
+    private long _pos;
+
+    /** Position from which the current token was found. */
+    private long _tokenFrom = -1;
+
+    /** Position in the file of the start of the next token. */
+    private long _tokenStart;
+
+    /** Position in the file just past the end of the next token. */
+    private long _tokenEnd;
+
+    /** Bytes of the current line. */
+    private byte[] _line = new byte[256];
+
+}
@@ -0,0 +1,111 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Scanner;
+
+/** The suite of all JUnit tests for the MappedInput class.
+ *  @author Ria Vora
+ */
+public class MappedInputTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Returns the name of a temporary file containing CONTENTS in
+     *  CHARSET. */
+    private String file(String contents, Charset charset)
+        throws IOException {
+        File file = File.createTempFile("enigma", ".in");
+        file.deleteOnExit();
+        Files.writeString(file.toPath(), contents, charset);
+        return file.getPath();
+    }
+
+    /** Returns the lines of a temporary file containing CONTENTS. */
+    private MappedInput mapped(String contents) throws IOException {
+        return new MappedInput(file(contents, Charset.defaultCharset()));
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testLinesAcrossWindows() throws IOException {
+        String contents = "* B Beta I II III AAAA\r\nHELLO WORLD\n\n"
+                + "  \rABCDEFGHIJKLMNOP\n* B\n*C";
+        String name = file(contents, Charset.defaultCharset());
+        for (int window = 1; window <= 9; window++) {
+            MappedInput input = new MappedInput(name, window,
+                    Charset.defaultCharset());
+            assertTrue(input.atSettings());
+            assertEquals("* B Beta I II III AAAA", input.nextLine());
+            assertTrue(input.atMessage());
+            assertEquals("HELLO WORLD", input.nextLine());
+            assertTrue(input.atMessage());
+            assertEquals("", input.nextLine());
+            assertEquals("  ", input.nextLine());
+            assertEquals("ABCDEFGHIJKLMNOP", input.nextLine());
+            assertTrue(input.atSettings());
+            assertFalse(input.atMessage());
+            assertEquals("* B", input.nextLine());
+            assertFalse(input.atSettings());
+            assertFalse(input.atMessage());
+            assertEquals("*C", input.nextLine());
+            assertFalse(input.hasNextLine());
+            assertFalse(input.atSettings());
+            assertFalse(input.atMessage());
+            input.close();
+        }
+    }
+
+    /** Checks that the lines of a file containing CONTENTS in CHARSET
+     *  are split as a Scanner splits them. */
+    private void checkMatchesScanner(String contents, Charset charset)
+        throws IOException {
+        String name = file(contents, charset);
+        for (int window = 1; window <= 4; window++) {
+            InputLines mapped = new MappedInput(name, window, charset);
+            InputLines scanned =
+                new ScannerLines(new Scanner(new File(name), charset));
+            while (scanned.hasNextLine()) {
+                assertEquals(scanned.atSettings(), mapped.atSettings());
+                assertEquals(scanned.atMessage(), mapped.atMessage());
+                assertTrue(mapped.hasNextLine());
+                assertEquals(scanned.nextLine(), mapped.nextLine());
+            }
+            assertFalse(mapped.hasNextLine());
+            mapped.close();
+            scanned.close();
+        }
+    }
+
+    @Test
+    public void testMatchesScanner() throws IOException {
+        checkMatchesScanner("* B\u2028Beta I\u3000AB\u0085CD\r\n"
+                + "\u00e9T\u2029\u00a0X\u2003\u2003* C\u2028\u2028*\n"
+                + "\u0085\rEND\u2028", StandardCharsets.UTF_8);
+        checkMatchesScanner("* B\u0085Beta I\u001fAB\u0085\r\n"
+                + "\u00e9T\u00a0X\u0085\u0085*\r\rEND",
+                StandardCharsets.ISO_8859_1);
+    }
+
+    @Test
+    public void testEmpty() throws IOException {
+        MappedInput input = mapped("");
+        assertFalse(input.hasNextLine());
+        assertFalse(input.atSettings());
+        input.close();
+    }
+
+}
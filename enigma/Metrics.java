@@ -0,0 +1,182 @@
+package enigma;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/** Live counts of the work done by the machines built from one
+ *  configuration, registered as a platform MBean named
+ *  "enigma:type=Metrics,config=NAME". Counts are kept in LongAdders and
+ *  latencies in a fixed number of striped histograms, each thread
+ *  writing the stripe its id hashes to, so that converting threads
+ *  seldom contend however many come and go; the stripes are merged
+ *  when read. Readings taken while conversions go on are approximate.
+ *  @author Ria Vora
+ */
+class Metrics implements MetricsMBean {
+
+    /** Return the metrics of the configuration named CONFIG, creating
+     *  and registering them if needed. */
+    static Metrics forConfig(String config) {
+        return ALL.computeIfAbsent(config, Metrics::new);
+    }
+
+    /** Metrics for the configuration named CONFIG, registered as an
+     *  MBean if possible. */
+    private Metrics(String config) {
+        _config = config;
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this,
+                    objectName(config));
+        } catch (JMException excp) {
+            /* Still counted, just not visible over JMX. */
+        }
+    }
+
+    /** Return the name of the MBean for the configuration named
+     *  CONFIG. */
+    static ObjectName objectName(String config) throws JMException {
+        return new ObjectName("enigma:type=Metrics,config="
+                + ObjectName.quote(config));
+    }
+
+    /** Records the conversion of CHARS characters as one message, which
+     *  took NANOS nanoseconds. */
+    void converted(int chars, long nanos) {
+        _characters.add(chars);
+        _messages.increment();
+        int bucket = 64 - Long.numberOfLeadingZeros(Math.max(nanos, 0));
+        _latencies.getAndIncrement(stripe() * BUCKETS + bucket);
+    }
+
+    /** Records a settings line applied. */
+    void session() {
+        _sessions.increment();
+    }
+
+    /** Records a settings line that could not be applied. */
+    void settingsFailure() {
+        _settingsFailures.increment();
+    }
+
+    @Override
+    public String getConfig() {
+        return _config;
+    }
+
+    @Override
+    public long getCharacters() {
+        return _characters.sum();
+    }
+
+    @Override
+    public long getMessages() {
+        return _messages.sum();
+    }
+
+    @Override
+    public long getSessions() {
+        return _sessions.sum();
+    }
+
+    @Override
+    public long getSettingsFailures() {
+        return _settingsFailures.sum();
+    }
+
+    @Override
+    public long[] getLatencyHistogram() {
+        long[] result = new long[BUCKETS];
+        for (int i = 0; i < _latencies.length(); i++) {
+            result[i % BUCKETS] += _latencies.get(i);
+        }
+        return result;
+    }
+
+    @Override
+    public long getLatencyP50Nanos() {
+        return percentile(0.5);
+    }
+
+    @Override
+    public long getLatencyP99Nanos() {
+        return percentile(0.99);
+    }
+
+    @Override
+    public void reset() {
+        _characters.reset();
+        _messages.reset();
+        _sessions.reset();
+        _settingsFailures.reset();
+        for (int i = 0; i < _latencies.length(); i++) {
+            _latencies.set(i, 0);
+        }
+    }
+
+    /** Return the histogram stripe of the current thread. */
+    private static int stripe() {
+        long h = Thread.currentThread().getId() * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 32) & (STRIPES - 1);
+    }
+
+    /** Return the upper end of the histogram bucket holding the
+     *  FRACTION quantile of latencies, or 0 if there are none. */
+    private long percentile(double fraction) {
+        long[] histogram = getLatencyHistogram();
+        long total = 0;
+        for (long count : histogram) {
+            total += count;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(fraction * total);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += histogram[i];
+            if (seen >= rank) {
+                return i >= BUCKETS - 1 ? Long.MAX_VALUE : (1L << i);
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    /** Number of buckets in a histogram: one for 0 and one for each
+     *  possible highest bit of a positive long. */
+    private static final int BUCKETS = 64;
+
+    /** Number of histogram stripes: a power of two at least twice the
+     *  number of processors, so that few threads share one at a time. */
+    private static final int STRIPES =
+        Integer.highestOneBit(
+            Math.max(1, 4 * Runtime.getRuntime().availableProcessors() - 1));
+
+    /** The metrics of each configuration, by name. */
+    private static final ConcurrentHashMap<String, Metrics> ALL =
+        new ConcurrentHashMap<>();
+
+    /** The name of my configuration. */
+    private final String _config;
+
+    /** Number of characters converted. */
+    private final LongAdder _characters = new LongAdder();
+
+    /** Number of messages converted. */
+    private final LongAdder _messages = new LongAdder();
+
+    /** Number of settings lines applied. */
+    private final LongAdder _sessions = new LongAdder();
+
+    /** Number of settings lines that failed. */
+    private final LongAdder _settingsFailures = new LongAdder();
+
+    /** The latency histograms, STRIPES of them one after another, each
+     *  of BUCKETS counts. */
+    private final AtomicLongArray _latencies =
+        new AtomicLongArray(STRIPES * BUCKETS);
+}
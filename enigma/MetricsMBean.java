@@ -0,0 +1,39 @@
+package enigma;
+
+/** The management interface of Metrics.
+ *  @author Ria Vora
+ */
+public interface MetricsMBean {
+
+    /** Return the name of the configuration measured. */
+    String getConfig();
+
+    /** Return the number of characters converted. */
+    long getCharacters();
+
+    /** Return the number of messages (or message lines) converted. */
+    long getMessages();
+
+    /** Return the number of settings lines applied. */
+    long getSessions();
+
+    /** Return the number of settings lines that could not be
+     *  applied. */
+    long getSettingsFailures();
+
+    /** Return the number of conversions whose latency in nanoseconds
+     *  was in [2**(I-1), 2**I) at each index I > 0, with latencies of 0
+     *  nanoseconds counted at 0. */
+    long[] getLatencyHistogram();
+
+    /** Return an upper bound on the median conversion latency in
+     *  nanoseconds, or 0 if there have been no conversions. */
+    long getLatencyP50Nanos();
+
+    /** Return an upper bound on the 99th percentile of conversion
+     *  latency in nanoseconds, or 0 if there have been none. */
+    long getLatencyP99Nanos();
+
+    /** Start counting again from zero. */
+    void reset();
+}
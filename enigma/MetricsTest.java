@@ -0,0 +1,127 @@
+package enigma;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ForkJoinPool;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the Metrics class.
+ *  @author Ria Vora
+ */
+public class MetricsTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** A small configuration with one rotor of each kind. */
+    private static final String CONFIG = "ABCD\n 3 1\n"
+            + " R R (AB)(CD)\n F N\t(ABC)\n M MAC (AD) (B)\n"
+            + "    (C)\n";
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testCounts() throws JMException, InterruptedException {
+        Metrics metrics = Metrics.forConfig("metrics-test.conf");
+        metrics.reset();
+        assertSame(metrics, Metrics.forConfig("metrics-test.conf"));
+
+        Machine machine = Main.readConfig(CONFIG.getBytes());
+        machine.setMetrics(metrics);
+        SettingsParser parser = new SettingsParser(machine);
+        parser.apply("* R F M AB");
+        machine.convert("ABCDABCD");
+        try {
+            parser.apply("* R F M XX");
+            fail("bad settings applied");
+        } catch (EnigmaException excp) {
+            assertEquals(1, metrics.getSettingsFailures());
+        }
+        Thread other = new Thread(() -> {
+            Machine second = Main.readConfig(CONFIG.getBytes());
+            second.setMetrics(metrics);
+            new SettingsParser(second).apply("* R F M AA");
+            second.convert("DCB");
+        });
+        other.start();
+        other.join();
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = Metrics.objectName("metrics-test.conf");
+        assertEquals(11L, server.getAttribute(name, "Characters"));
+        assertEquals(2L, server.getAttribute(name, "Messages"));
+        assertEquals(2L, server.getAttribute(name, "Sessions"));
+        assertEquals(1L, server.getAttribute(name, "SettingsFailures"));
+        long total = 0;
+        for (long count : (long[]) server.getAttribute(name,
+                "LatencyHistogram")) {
+            total += count;
+        }
+        assertEquals(2, total);
+        long p50 = (Long) server.getAttribute(name, "LatencyP50Nanos");
+        long p99 = (Long) server.getAttribute(name, "LatencyP99Nanos");
+        assertTrue(p50 > 0 && p50 <= p99);
+
+        server.invoke(name, "reset", null, null);
+        assertEquals(0, metrics.getCharacters());
+        assertEquals(0, metrics.getLatencyP99Nanos());
+    }
+
+    @Test
+    public void testManyThreads() throws InterruptedException {
+        Metrics metrics = Metrics.forConfig("metrics-threads.conf");
+        metrics.reset();
+        for (int i = 0; i < 200; i++) {
+            Thread thread = new Thread(() -> {
+                Machine machine = Main.readConfig(CONFIG.getBytes());
+                machine.setMetrics(metrics);
+                new SettingsParser(machine).apply("* R F M AB");
+                machine.convert("ABCD");
+            });
+            thread.start();
+            thread.join();
+        }
+        long[] histogram = metrics.getLatencyHistogram();
+        assertEquals(64, histogram.length);
+        long total = 0;
+        for (long count : histogram) {
+            total += count;
+        }
+        assertEquals(200, total);
+        assertEquals(200, metrics.getMessages());
+        assertEquals(800, metrics.getCharacters());
+    }
+
+    @Test
+    public void testParallelCounted() {
+        Metrics metrics = Metrics.forConfig("metrics-parallel.conf");
+        metrics.reset();
+        Machine machine = Main.readConfig(CONFIG.getBytes());
+        machine.setMetrics(metrics);
+        new SettingsParser(machine).apply("* R F M AB");
+        StringBuilder msg = new StringBuilder();
+        for (int i = 0; i < 100000; i++) {
+            msg.append("ABCD".charAt(i % 4));
+        }
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            machine.convertParallel(msg.toString(), pool);
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(1, metrics.getMessages());
+        assertEquals(100000, metrics.getCharacters());
+        assertTrue(metrics.getLatencyP50Nanos() > 0);
+    }
+
+}
@@ -1,8 +1,5 @@
 package enigma;
 
-import java.util.ArrayList;
-
-
 /** Class that represents a rotating rotor in the enigma machine.
  *  @author Ria Vora
  */
@@ -15,9 +12,8 @@ class MovingRotor extends Rotor {
      */
     MovingRotor(String name, Permutation perm, String notches) {
         super(name, perm);
-        set(0);
-        _notches = new ArrayList<Integer>();
         setNotches(notches);
+        set(0);
     }
 
     /** A rotor named NAME whose permutation in its default setting is
@@ -25,23 +21,57 @@ class MovingRotor extends Rotor {
      *  The Rotor is set to the given SETTING.*/
     MovingRotor(String name, Permutation perm, String notches, int setting) {
         super(name, perm);
-        set(setting);
-        _notches = new ArrayList<Integer>();
         setNotches(notches);
+        set(setting);
     }
-    /** Sets the notches to be their index value into a notch ArrayList.
-     * Also checks to see if each of the letters exists in Alphabet,
-     * otherwise throws an exception.
+
+    /** A rotating rotor like ORIGINAL, with its notches, at its 0
+     *  setting. */
+    MovingRotor(MovingRotor original) {
+        super(original);
+        _notchChars = original._notchChars;
+        _toNotch = original._toNotch;
+        set(0);
+    }
+
+    @Override
+    Rotor copy() {
+        return new MovingRotor(this);
+    }
+    /** Sets the notches to the letters of NOTCHES, recording for each
+     * setting how many steps it is from the next notch. With no notches,
+     * every setting is at a notch. Also checks to see if each of the
+     * letters exists in Alphabet, otherwise throws an exception.
      * @param notches is a String with all of the notches. */
     void setNotches(String notches) {
+        int n = size();
+        boolean[] notched = new boolean[n];
         for (int i = 0; i < notches.length(); i++) {
             char a = notches.charAt(i);
             if (!alphabet().contains(a)) {
                 throw new EnigmaException("Notch of "
                         + a + " is not in your alphabet!");
             }
-            _notches.add(permutation().alphabet().toInt(a));
+            notched[permutation().alphabet().toInt(a)] = true;
         }
+        _notchChars = notches;
+        _toNotch = new int[n];
+        if (!notches.isEmpty()) {
+            int distance = 0;
+            for (int k = 2 * n - 1; k >= 0; k--) {
+                distance = notched[k % n] ? 0 : distance + 1;
+                if (k < n) {
+                    _toNotch[k] = distance;
+                }
+            }
+        }
+        _countdown = _toNotch[setting()];
+    }
+
+    /** Return the characters at which I have notches, as given to my
+     *  constructor. */
+    String notches() {
+        return _notchChars;
     }
 
     @Override
@@ -49,25 +79,49 @@ class MovingRotor extends Rotor {
         return true;
     }
 
+    @Override
+    void set(int posn) {
+        super.set(posn);
+        _countdown = _toNotch[posn];
+    }
+
+    @Override
+    void set(char cposn) {
+        super.set(cposn);
+        _countdown = _toNotch[setting()];
+    }
+
     @Override
     void advance() {
         int newSetting = 0;
         if (setting() <  alphabet().size() - 1) {
             newSetting = setting() + 1;
         }
-        set(newSetting);
+        if (_countdown > 0) {
+            super.set(newSetting);
+            _countdown -= 1;
+        } else {
+            set(newSetting);
+        }
     }
 
     @Override
     boolean atNotch() {
-        if (_notches.isEmpty()) {
-            return true;
-        }
-        return _notches.contains(setting());
+        return _countdown == 0;
     }
 
-    /** An ArrayList of the int index value of
-     * each notch.*/
-    private ArrayList<Integer> _notches;
+    @Override
+    boolean notchAt(int posn) {
+        return _toNotch[posn] == 0;
+    }
+
+    /** The characters of the notches. */
+    private String _notchChars;
+
+    /** The number of steps from each setting to the next notch. */
+    private int[] _toNotch;
+
+    /** The number of steps from my setting to the next notch. */
+    private int _countdown;
 
 }
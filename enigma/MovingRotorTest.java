@@ -111,6 +111,51 @@ public class MovingRotorTest {
 
     }
 
+    @Test
+    public void checkAtNotchAdvancing() {
+        setRotor("VI", NAVALA, "ZM", 10);
+        for (int i = 0; i < 60; i++) {
+            int s = rotor.setting();
+            assertEquals(s == 25 || s == 12, rotor.atNotch());
+            assertEquals(rotor.atNotch(), rotor.notchAt(s));
+            rotor.advance();
+        }
+        rotor.set('M');
+        assertTrue(rotor.atNotch());
+        rotor.advance();
+        assertFalse(rotor.atNotch());
+
+        setRotor("I", NAVALA, "");
+        for (int i = 0; i < 30; i++) {
+            assertTrue(rotor.atNotch());
+            rotor.advance();
+        }
+    }
 
+    @Test
+    public void checkTablesMatch() {
+        setRotor("I", NAVALA, "Q");
+        assertFalse(rotor.tabled());
+        checkArithmetic();
+        rotor.setTables();
+        assertTrue(rotor.tabled());
+        checkArithmetic();
+        assertTrue(rotor.copy().tabled());
+    }
+
+    /** Check that rotor converts as its permutation does, shifted by
+     *  its setting, at every setting. */
+    private void checkArithmetic() {
+        Permutation perm = rotor.permutation();
+        for (int s = 0; s < rotor.size(); s++) {
+            for (int p = 0; p < rotor.size(); p++) {
+                assertEquals(perm.wrap(perm.permute(p + s) - s),
+                        rotor.convertForward(p));
+                assertEquals(perm.wrap(perm.invert(p + s) - s),
+                        rotor.convertBackward(p));
+            }
+            rotor.advance();
+        }
+    }
 
 }
@@ -0,0 +1,23 @@
+package enigma;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/** A flight recorder event for writing buffered output to its stream.
+ *  @author Ria Vora
+ */
+@Name("enigma.OutputFlush")
+@Label("Output Flush")
+@Category("Enigma")
+@Description("Grouped output written to its stream")
+class OutputFlushEvent extends Event {
+
+    /** Number of bytes written. */
+    @Label("Bytes")
+    @DataAmount
+    int bytes;
+}
@@ -1,7 +1,7 @@
 package enigma;
 
-import java.util.HashMap;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 
 /** Represents a permutation of a range of integers starting at 0 corresponding
@@ -18,91 +18,138 @@ class Permutation {
 
 
     Permutation(String cycles, Alphabet alphabet) {
+        this(parseCycles(cycles), alphabet);
+    }
+
+    /** Set this Permutation to the one made of CYCLES, each of which is
+     *  the list of characters c0c1...cm of ALPHABET in the cycle
+     *  c0->c1->...->cm->c0. Characters in the alphabet that are not
+     *  included in any cycle map to themselves. */
+    Permutation(char[][] cycles, Alphabet alphabet) {
         _alphabet = alphabet;
-        checkCycles(cycles);
-        _cycles = new HashMap<Character, Character>();
-        setCycles(cycles);
+        _forward = new int[size()];
+        Arrays.fill(_forward, -1);
+        for (char[] cycle : cycles) {
+            addCycle(cycle);
+        }
         addNotInCycles();
+        setInverse();
     }
 
-    /** Checks whether the cycles match a certain format and
-     * whether they are contained in the alphabet.
-     * @param cycles contains all the cycles*/
-    private void checkCycles(String cycles) {
-        if (!cycles.matches("(\\([^ \\*\\(\\)]+\\) ?)*")) {
-            throw new EnigmaException("Your cycles " + cycles
-                    + " are incorrectly formatted, and "
-                    + "should be in the form of (...) (..)");
+    /** Set this Permutation to the one mapping each index I of ALPHABET
+     *  to FORWARD[I], which must hold each index exactly once. */
+    Permutation(int[] forward, Alphabet alphabet) {
+        _alphabet = alphabet;
+        if (forward.length != size()) {
+            throw new EnigmaException("A table of " + forward.length
+                    + " entries cannot permute an alphabet of size "
+                    + size());
         }
-        char[] letters = cycles.replaceAll("\\(|\\)| ", "").toCharArray();
-        for (char a: letters) {
-            if (!_alphabet.contains(a)) {
-                throw new EnigmaException("Your cycles " + cycles
-                        + " have the additional character " + a
-                        + " that is not in the given alphabet");
+        _forward = forward.clone();
+        _inverse = new int[size()];
+        Arrays.fill(_inverse, -1);
+        for (int i = 0; i < _forward.length; i++) {
+            int p = _forward[i];
+            if (p < 0 || p >= size() || _inverse[p] != -1) {
+                throw new EnigmaException("The table does not hold "
+                        + "each index exactly once");
+            }
+            _inverse[p] = i;
+            if (p == i) {
+                _derangement = false;
             }
         }
-
-        hasDuplicates(letters);
     }
 
-    /** Checks whether the cycles have duplicate letters.
-     * @param letters is the array of letters in cycles */
-    private void hasDuplicates(char[] letters) {
-        ArrayList<Character> temp = new ArrayList<Character>();
-        for (char a: letters) {
-            if (temp.contains(a)) {
-                throw new EnigmaException("Your cycles have "
-                        + "the duplicate letter of " + a);
+    /** Cuts CYCLES, in the form "(cccc) (cc) ...", into its separate
+     * cycles without their parentheses.
+     * @return the characters of each cycle
+     * @param cycles is a string with all of the cycles*/
+    private static char[][] parseCycles(String cycles) {
+        ArrayList<char[]> result = new ArrayList<char[]>();
+        int i = 0;
+        while (i < cycles.length()) {
+            int end = cycleEnd(cycles, i, cycles.length());
+            if (end == -1) {
+                throw new EnigmaException("Your cycles " + cycles
+                        + " are incorrectly formatted, and "
+                        + "should be in the form of (...) (..)");
+            }
+            result.add(cycles.substring(i + 1, end - 1).toCharArray());
+            i = end;
+            if (i < cycles.length() && cycles.charAt(i) == ' ') {
+                i += 1;
             }
-            temp.add(a);
         }
+        return result.toArray(new char[result.size()][]);
     }
 
-    /** Cuts the cycles into each separate cycle, removes parentheses,
-     * and adds them to the Permutation.
-     * @param cycles is a string with all of the cycles*/
-    private void setCycles(String cycles) {
-        String[] cutCycles = cycles.replaceAll(
-                "\\(| ", "").split("\\)");
-        for (String cycle: cutCycles) {
-            if (cycle.length() > 0) {
-                addCycle(cycle);
-            }
+    /** Returns the position just past the cycle "(cc...)" starting at
+     *  START in TEXT and ending before END, or -1 if there is no such
+     *  cycle there. The characters of a cycle cannot be spaces, "*",
+     *  "(" or ")", and there must be at least one. */
+    static int cycleEnd(CharSequence text, int start, int end) {
+        if (start >= end || text.charAt(start) != '(') {
+            return -1;
+        }
+        int i = start + 1;
+        while (i < end && !isCycleDelimiter(text.charAt(i))) {
+            i += 1;
         }
+        if (i == start + 1 || i == end || text.charAt(i) != ')') {
+            return -1;
+        }
+        return i + 1;
+    }
+
+    /** Return true iff C cannot be one of the characters of a cycle. */
+    private static boolean isCycleDelimiter(char c) {
+        return c == ' ' || c == '*' || c == '(' || c == ')';
     }
 
     /** Add the cycle c0->c1->...->cm->c0 to the permutation, where CYCLE is
      *  c0c1...cm. */
-    private void addCycle(String cycle) {
-        for (int i = 0; i < cycle.length() - 1; i++) {
-            char a = cycle.charAt(i);
-            if (_cycles.containsKey(a)) {
-                throw new EnigmaException("The cycle "
-                        + cycle + " has the duplicate letter " + a);
+    private void addCycle(char[] cycle) {
+        for (char a : cycle) {
+            if (!_alphabet.contains(a)) {
+                throw new EnigmaException("Your cycle "
+                        + new String(cycle) + " has the additional character "
+                        + a + " that is not in the given alphabet");
             }
-            _cycles.put(a, cycle.charAt(i + 1));
         }
-        char c = cycle.charAt(cycle.length() - 1);
-        if (_cycles.containsKey(c)) {
-            throw new EnigmaException("The cycle "
-                    + cycle + " has the duplicate letter " + c);
+        for (int i = 0; i < cycle.length; i++) {
+            char a = cycle[i];
+            char next = cycle[(i + 1) % cycle.length];
+            int index = _alphabet.toInt(a);
+            if (_forward[index] != -1) {
+                throw new EnigmaException("Your cycles have "
+                        + "the duplicate letter of " + a);
+            }
+            _forward[index] = _alphabet.toInt(next);
         }
-        _cycles.put(c, cycle.charAt(0));
     }
 
-    /** Adds all of the letters not in cycles to map
-     * to themselves in the HashMap cycles.*/
+    /** Makes all of the letters not in cycles map
+     * to themselves in the forward table.*/
     private void addNotInCycles() {
-        for (int i = 0; i < _alphabet.size(); i++) {
-            char a = _alphabet.toChar(i);
-            if (!_cycles.containsKey(a)) {
-                _cycles.put(a, a);
+        for (int i = 0; i < _forward.length; i++) {
+            if (_forward[i] == -1) {
+                _forward[i] = i;
+            }
+            if (_forward[i] == i) {
                 _derangement = false;
             }
         }
     }
 
+    /** Fills the inverse table from the completed forward table. */
+    private void setInverse() {
+        _inverse = new int[_forward.length];
+        for (int i = 0; i < _forward.length; i++) {
+            _inverse[_forward[i]] = i;
+        }
+    }
+
 
     /** Return the value of P modulo the size of this permutation. */
     final int wrap(int p) {
@@ -121,35 +168,30 @@ class Permutation {
     /** Return the result of applying this permutation to P modulo the
      *  alphabet size. */
     int permute(int p) {
-        char translation = permute(_alphabet.toChar(wrap(p)));
-        return _alphabet.toInt(translation);
+        return _forward[wrap(p)];
     }
 
     /** Return the result of applying the inverse of this permutation
      *  to  C modulo the alphabet size. */
     int invert(int c) {
-        char translation = invert(_alphabet.toChar(wrap(c)));
-        return _alphabet.toInt(translation);
+        return _inverse[wrap(c)];
     }
 
     /** Return the result of applying this permutation to the index of P
      *  in ALPHABET, and converting the result to a character of ALPHABET. */
     char permute(char p) {
-        if (_cycles.containsKey(p)) {
-            return _cycles.get(p);
+        if (!_alphabet.contains(p)) {
+            throw new EnigmaException("Character is not in the alphabet");
         }
-        throw new EnigmaException("Character is not in the alphabet");
-
+        return _alphabet.toChar(_forward[_alphabet.toInt(p)]);
     }
 
     /** Return the result of applying the inverse of this permutation to C. */
     char invert(char c) {
-        for (char key: _cycles.keySet()) {
-            if (_cycles.get(key) == c) {
-                return key;
-            }
+        if (!_alphabet.contains(c)) {
+            throw new EnigmaException("Character is not in the alphabet");
         }
-        throw new EnigmaException("Character is not in the alphabet");
+        return _alphabet.toChar(_inverse[_alphabet.toInt(c)]);
     }
 
     /** Return the alphabet used to initialize this Permutation. */
@@ -160,22 +202,18 @@ class Permutation {
     /** Return true iff this permutation is a derangement (i.e., a
      *  permutation for which no value maps to itself). */
     boolean derangement() {
-        if (!_derangement) {
-            return false;
-        }
-        for (char key : _cycles.keySet()) {
-            if (key == _cycles.get(key)) {
-                return false;
-            }
-        }
-        return true;
+        return _derangement;
     }
 
     /** Alphabet of this permutation. */
     private Alphabet _alphabet;
 
-    /** Cycles of this permutation. */
-    private HashMap<Character, Character> _cycles;
+    /** The index each index maps to under this permutation. */
+    private int[] _forward;
+
+    /** The index each index maps to under the inverse of this
+     *  permutation. */
+    private int[] _inverse;
 
     /** Whether this permutation is a derangement. */
     private boolean _derangement = true;
@@ -208,6 +208,18 @@ public class PermutationTest {
 
     }
 
+    @Test
+    public void testPermuteIntWrap() {
+        perm = new Permutation("(BACD)", new Alphabet("ABCD"));
+        assertEquals(2, perm.permute(4));
+        assertEquals(1, perm.permute(-1));
+        assertEquals(1, perm.invert(4));
+        assertEquals(2, perm.invert(-1));
+        for (int i = 0; i < perm.size(); i++) {
+            assertEquals(i, perm.invert(perm.permute(i)));
+        }
+    }
+
     @Test
     public void checkIdTransform() {
         perm = new Permutation("", UPPER);
@@ -0,0 +1,210 @@
+package enigma;
+
+/** The conversions of a machine at every position of the cycle of its
+ *  rotor settings. The settings of a machine after each key press
+ *  depend only on the settings before it, so, starting from given
+ *  settings, they run through a prefix of START positions and then
+ *  repeat with some PERIOD. For each of those rows of settings, this
+ *  holds the whole conversion through the plugboard, the rotors and the
+ *  reflector and back as one table, so that a character is converted
+ *  with a single lookup and no rotor arithmetic.
+ *  @author Ria Vora
+ */
+class PositionTable {
+
+    /** Return the table of the machine on SPEC whose slots hold the
+     *  rotors indexed by SLOTS, at SETTINGS before the first key press,
+     *  with PLUGBOARD, or null if it would take more than BUDGET bytes. */
+    static PositionTable build(MachineSpec spec, int[] slots, int[] settings,
+                               Permutation plugboard, long budget) {
+        int n = spec.alphabet().size();
+        int first = slots.length - spec.numPawls();
+        int moving = slots.length - first;
+        long rowBytes = (long) n * (n <= BYTE_LIMIT ? 1 : 2) + 4L * moving;
+        long maxRows = Math.min(budget / rowBytes,
+                MAX_ARRAY / Math.max(n, moving));
+        if (maxRows < 1) {
+            return null;
+        }
+        Stepper tortoise = new Stepper(spec, slots, settings);
+        Stepper hare = new Stepper(spec, slots, settings);
+        long steps = 0;
+        do {
+            tortoise.step();
+            hare.step();
+            hare.step();
+            steps += 1;
+            if (steps > maxRows) {
+                return null;
+            }
+        } while (!tortoise.sameAs(hare, first));
+        tortoise = new Stepper(spec, slots, settings);
+        int start = 0;
+        while (!tortoise.sameAs(hare, first)) {
+            tortoise.step();
+            hare.step();
+            start += 1;
+        }
+        int period = 1;
+        hare.step();
+        while (!tortoise.sameAs(hare, first)) {
+            hare.step();
+            period += 1;
+        }
+        if (start + (long) period > maxRows) {
+            return null;
+        }
+        return new PositionTable(spec, slots, settings, plugboard, start,
+                period);
+    }
+
+    /** The table of the machine on SPEC with SLOTS, SETTINGS before the
+     *  first key press and PLUGBOARD, whose settings repeat with PERIOD
+     *  after START key presses. */
+    private PositionTable(MachineSpec spec, int[] slots, int[] settings,
+                          Permutation plugboard, int start, int period) {
+        int n = spec.alphabet().size();
+        _size = n;
+        _start = start;
+        _rows = start + period;
+        int first = slots.length - spec.numPawls();
+        _moving = slots.length - first;
+        _states = new int[_rows * _moving];
+        if (n <= BYTE_LIMIT) {
+            _bytes = new byte[_rows * n];
+        } else {
+            _chars = new char[_rows * n];
+        }
+        Stepper stepper = new Stepper(spec, slots, settings);
+        for (int row = 0; row < _rows; row++) {
+            int[] now = stepper.settings();
+            System.arraycopy(now, first, _states, row * _moving, _moving);
+            for (int c = 0; c < n; c++) {
+                int e = spec.convert(slots, plugboard, c, now);
+                if (_bytes != null) {
+                    _bytes[row * n + c] = (byte) e;
+                } else {
+                    _chars[row * n + c] = (char) e;
+                }
+            }
+            stepper.step();
+        }
+    }
+
+    /** Return the number of key presses after which the settings start
+     *  repeating. */
+    int start() {
+        return _start;
+    }
+
+    /** Return the number of key presses after which the settings
+     *  repeat, once they have started to. */
+    int period() {
+        return _rows - _start;
+    }
+
+    /** Return the row of the settings after N key presses. */
+    int row(long n) {
+        if (n < _rows) {
+            return (int) n;
+        }
+        return _start + (int) ((n - _start) % period());
+    }
+
+    /** Return the row of the settings one key press after those of
+     *  ROW. */
+    int next(int row) {
+        row += 1;
+        return row == _rows ? _start : row;
+    }
+
+    /** Return the conversion of C (an index in the alphabet) at the
+     *  settings of ROW. */
+    int convert(int row, int c) {
+        if (_bytes != null) {
+            return _bytes[row * _size + c] & BYTE_MASK;
+        }
+        return _chars[row * _size + c];
+    }
+
+    /** Return the setting of the Ith moving rotor from the left at the
+     *  settings of ROW. */
+    int setting(int row, int i) {
+        return _states[row * _moving + i];
+    }
+
+    /** The settings of a machine, stepped one key press at a time. */
+    private static class Stepper {
+
+        /** Settings of the machine on SPEC with SLOTS, starting from
+         *  SETTINGS. */
+        Stepper(MachineSpec spec, int[] slots, int[] settings) {
+            _spec = spec;
+            _slots = slots;
+            _settings = settings.clone();
+            _advanced = new boolean[settings.length];
+        }
+
+        /** Moves the settings on by one key press. */
+        void step() {
+            _spec.advance(_slots, _settings, _advanced);
+        }
+
+        /** Return the current settings, which must not be changed. */
+        int[] settings() {
+            return _settings;
+        }
+
+        /** Return true iff the settings of the slots from FIRST on are
+         *  those of OTHER. */
+        boolean sameAs(Stepper other, int first) {
+            for (int i = first; i < _settings.length; i++) {
+                if (_settings[i] != other._settings[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /** The spec of the machine. */
+        private final MachineSpec _spec;
+        /** The index of the rotor in each slot. */
+        private final int[] _slots;
+        /** The setting of each slot. */
+        private final int[] _settings;
+        /** Scratch space for advance. */
+        private final boolean[] _advanced;
+    }
+
+    /** Largest alphabet size whose conversions are kept in bytes. */
+    private static final int BYTE_LIMIT = 256;
+
+    /** Longest array that every JVM can allocate. */
+    private static final int MAX_ARRAY = Integer.MAX_VALUE - 8;
+
+    /** Mask taking a byte to the unsigned value it holds. */
+    private static final int BYTE_MASK = 0xff;
+
+    /** Size of the alphabet. */
+    private final int _size;
+
+    /** Number of key presses before the settings start repeating. */
+    private final int _start;
+
+    /** Number of rows: the settings before they repeat. */
+    private final int _rows;
+
+    /** Number of moving slots. */
+    private final int _moving;
+
+    /** The settings of the moving slots in each row, one row after
+     *  another. */
+    private final int[] _states;
+
+    /** The conversions in each row, one row after another, when the
+     *  alphabet has at most BYTE_LIMIT characters. */
+    private byte[] _bytes;
+
+    /** The conversions in each row, when the alphabet is larger. */
+    private char[] _chars;
+}
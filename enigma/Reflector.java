@@ -18,6 +18,16 @@ class Reflector extends FixedRotor {
         set(0);
     }
 
+    /** A reflector like ORIGINAL. */
+    Reflector(Reflector original) {
+        super(original);
+    }
+
+    @Override
+    Rotor copy() {
+        return new Reflector(this);
+    }
+
     @Override
     boolean reflecting() {
         return true;
@@ -7,12 +7,55 @@ import static enigma.EnigmaException.*;
  */
 class Rotor {
 
-    /** A rotor named NAME whose permutation is given by PERM. */
+    /** A rotor named NAME whose permutation is given by PERM. Its
+     *  conversions are not precomputed until setTables() is called. */
     Rotor(String name, Permutation perm) {
         _name = name;
         _permutation = perm;
     }
 
+    /** A rotor like ORIGINAL, sharing its permutation and tables, at
+     *  its 0 setting. */
+    Rotor(Rotor original) {
+        _name = original._name;
+        _permutation = original._permutation;
+        _forwardTable = original._forwardTable;
+        _backwardTable = original._backwardTable;
+    }
+
+    /** Return a rotor like me, at its 0 setting, whose setting can
+     *  change independently of mine. */
+    Rotor copy() {
+        return new Rotor(this);
+    }
+
+    /** Fills the forward and backward tables with my conversions at
+     *  every setting, row by row, unless they are already filled. Copies
+     *  made afterwards share them. This uses 2 * size() * size() ints,
+     *  so it is left to the MachineSpec holding me to decide. */
+    void setTables() {
+        if (tabled()) {
+            return;
+        }
+        int n = size();
+        _forwardTable = new int[n * n];
+        _backwardTable = new int[n * n];
+        for (int setting = 0; setting < n; setting++) {
+            int row = setting * n;
+            for (int p = 0; p < n; p++) {
+                _forwardTable[row + p] = _permutation.wrap(
+                        _permutation.permute(p + setting) - setting);
+                _backwardTable[row + p] = _permutation.wrap(
+                        _permutation.invert(p + setting) - setting);
+            }
+        }
+    }
+
+    /** Return true iff my conversions are precomputed. */
+    boolean tabled() {
+        return _forwardTable != null;
+    }
+
     /** Return my name. */
     String name() {
         return _name;
@@ -51,17 +94,41 @@ class Rotor {
     /** Set setting() to POSN.  */
     void set(int posn) {
         _setting = posn;
+        _row = posn * size();
     }
 
     /** Set setting() to character CPOSN. */
     void set(char cposn) {
         _setting = _permutation.alphabet().toInt(cposn);
+        _row = _setting * size();
     }
 
     /** Return the conversion of P (an integer in the range 0..size()-1)
      *  according to my permutation. */
     int convertForward(int p) {
-        int result = _permutation.permute(p + _setting) - _setting;
+        if (_forwardTable != null) {
+            return _forwardTable[_row + p];
+        }
+        return convertForward(p, _setting);
+    }
+
+    /** Return the conversion of E (an integer in the range 0..size()-1)
+     *  according to the inverse of my permutation. */
+    int convertBackward(int e) {
+        if (_backwardTable != null) {
+            return _backwardTable[_row + e];
+        }
+        return convertBackward(e, _setting);
+    }
+
+    /** Return the conversion of P (an integer in the range 0..size()-1)
+     *  according to my permutation if my setting were POSN. Does not
+     *  change my setting. */
+    int convertForward(int p, int posn) {
+        if (_forwardTable != null) {
+            return _forwardTable[posn * size() + p];
+        }
+        int result = _permutation.permute(p + posn) - posn;
         if (result < 0) {
             return result + alphabet().size();
         }
@@ -69,9 +136,13 @@ class Rotor {
     }
 
     /** Return the conversion of E (an integer in the range 0..size()-1)
-     *  according to the inverse of my permutation. */
-    int convertBackward(int e) {
-        int result = _permutation.invert(e + _setting) - _setting;
+     *  according to the inverse of my permutation if my setting were
+     *  POSN. Does not change my setting. */
+    int convertBackward(int e, int posn) {
+        if (_backwardTable != null) {
+            return _backwardTable[posn * size() + e];
+        }
+        int result = _permutation.invert(e + posn) - posn;
         if (result < 0) {
             return result + alphabet().size();
         }
@@ -81,6 +152,12 @@ class Rotor {
     /** Returns true iff I am positioned to allow the rotor to my left
      *  to advance. */
     boolean atNotch() {
+        return notchAt(_setting);
+    }
+
+    /** Returns true iff I would be positioned to allow the rotor to my
+     *  left to advance if my setting were POSN. */
+    boolean notchAt(int posn) {
         return false;
     }
 
@@ -102,4 +179,19 @@ class Rotor {
     /** The original setting for the rotor. */
     private int _setting;
 
+    /** Start of the row for my setting in the conversion tables. */
+    private int _row;
+
+    /** My forward conversion at each setting, one row of size()
+     *  entries per setting, or null if not precomputed. */
+    private int[] _forwardTable;
+
+    /** My backward conversion at each setting, laid out as
+     *  _forwardTable. */
+    private int[] _backwardTable;
+
+    /** Largest alphabet size for which a MachineSpec precomputes
+     *  conversions unless it is given another limit. */
+    static final int TABLE_LIMIT = 128;
+
 }
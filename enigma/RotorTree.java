@@ -0,0 +1,104 @@
+package enigma;
+
+import java.util.List;
+
+/** The composed conversions of a stack of rotors at their current
+ *  settings, kept in a balanced tree of permutation tables so that
+ *  moving one rotor only recomposes the tables on its path to the root.
+ *  Rotor 0 of the stack is its leftmost; converting forward goes from
+ *  its last rotor to rotor 0, and backward the other way.
+ *  @author Ria Vora
+ */
+class RotorTree {
+
+    /** A stack of LEAVES rotors on an alphabet of SIZE characters, all
+     *  converting each character to itself until set. */
+    RotorTree(int size, int leaves) {
+        int width = 1;
+        while (width < leaves) {
+            width *= 2;
+        }
+        _width = width;
+        _leaves = leaves;
+        _forward = new int[2 * width][size];
+        _backward = new int[2 * width][size];
+        for (int node = 1; node < 2 * width; node++) {
+            for (int c = 0; c < size; c++) {
+                _forward[node][c] = _backward[node][c] = c;
+            }
+        }
+    }
+
+    /** Return true iff I am a stack of LEAVES rotors on an alphabet of
+     *  SIZE characters. */
+    boolean fits(int size, int leaves) {
+        return _forward[1].length == size && _leaves == leaves;
+    }
+
+    /** Sets the stack to the rotors of ROTORS from index FROM on, at their
+     *  current settings, composing every table once. */
+    void setAll(List<Rotor> rotors, int from) {
+        for (int i = 0; from + i < rotors.size() && i < _width; i++) {
+            setLeaf(i, rotors.get(from + i));
+        }
+        for (int node = _width - 1; node >= 1; node--) {
+            compose(node);
+        }
+    }
+
+    /** Sets rotor I of the stack to ROTOR at its current setting. */
+    void set(int i, Rotor rotor) {
+        setLeaf(i, rotor);
+        for (int node = (_width + i) / 2; node >= 1; node /= 2) {
+            compose(node);
+        }
+    }
+
+    /** Return the conversion of C by the whole stack, forward. */
+    int convertForward(int c) {
+        return _forward[1][c];
+    }
+
+    /** Return the conversion of C by the whole stack, backward. */
+    int convertBackward(int c) {
+        return _backward[1][c];
+    }
+
+    /** Fills the tables of leaf I with the conversions of ROTOR. */
+    private void setLeaf(int i, Rotor rotor) {
+        int[] forward = _forward[_width + i];
+        int[] backward = _backward[_width + i];
+        for (int c = 0; c < forward.length; c++) {
+            forward[c] = rotor.convertForward(c);
+            backward[c] = rotor.convertBackward(c);
+        }
+    }
+
+    /** Recomposes the tables of NODE from those of its children, the
+     *  left of which is nearer rotor 0. */
+    private void compose(int node) {
+        int[] forward = _forward[node];
+        int[] backward = _backward[node];
+        int[] leftForward = _forward[2 * node];
+        int[] rightForward = _forward[2 * node + 1];
+        int[] leftBackward = _backward[2 * node];
+        int[] rightBackward = _backward[2 * node + 1];
+        for (int c = 0; c < forward.length; c++) {
+            forward[c] = leftForward[rightForward[c]];
+            backward[c] = rightBackward[leftBackward[c]];
+        }
+    }
+
+    /** Number of rotors in the stack. */
+    private final int _leaves;
+
+    /** Number of leaves, a power of two; leaf I is node _width + I. */
+    private final int _width;
+
+    /** The forward conversions of each node, whose children are nodes
+     *  2 * node and 2 * node + 1; node 1 is the root. */
+    private final int[][] _forward;
+
+    /** The backward conversions of each node. */
+    private final int[][] _backward;
+}
@@ -0,0 +1,96 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the RotorTree class.
+ *  @author Ria Vora
+ */
+public class RotorTreeTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Source of the random wirings, settings and moves, seeded so
+     *  that every run checks the same stacks. */
+    private final Random _random = new Random(61);
+
+    /** Returns COUNT moving rotors with random wirings of the 26 letters,
+     *  at random settings. */
+    private ArrayList<Rotor> randomRotors(int count) {
+        ArrayList<Rotor> rotors = new ArrayList<Rotor>();
+        Alphabet alpha = new Alphabet(UPPER_STRING);
+        for (int i = 0; i < count; i++) {
+            int[] wiring = new int[26];
+            for (int k = 0; k < 26; k++) {
+                int j = _random.nextInt(k + 1);
+                wiring[k] = wiring[j];
+                wiring[j] = k;
+            }
+            Rotor rotor = new MovingRotor("R" + i,
+                    new Permutation(wiring, alpha), "A");
+            rotor.set(_random.nextInt(26));
+            rotors.add(rotor);
+        }
+        return rotors;
+    }
+
+    /** Checks that TREE converts as ROTORS would one by one. */
+    private void checkTree(RotorTree tree, ArrayList<Rotor> rotors) {
+        for (int c = 0; c < 26; c++) {
+            int forward = c;
+            for (int i = rotors.size() - 1; i >= 0; i--) {
+                forward = rotors.get(i).convertForward(forward);
+            }
+            assertEquals(forward, tree.convertForward(c));
+            int backward = c;
+            for (int i = 0; i < rotors.size(); i++) {
+                backward = rotors.get(i).convertBackward(backward);
+            }
+            assertEquals(backward, tree.convertBackward(c));
+        }
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testSetAll() {
+        for (int count : new int[] {0, 1, 2, 5, 37, 64}) {
+            ArrayList<Rotor> rotors = randomRotors(count);
+            RotorTree tree = new RotorTree(26, count);
+            tree.setAll(rotors, 0);
+            checkTree(tree, rotors);
+        }
+    }
+
+    @Test
+    public void testSet() {
+        ArrayList<Rotor> rotors = randomRotors(37);
+        RotorTree tree = new RotorTree(26, 37);
+        tree.setAll(rotors, 0);
+        for (int k = 0; k < 200; k++) {
+            int i = _random.nextInt(37);
+            rotors.get(i).advance();
+            tree.set(i, rotors.get(i));
+            checkTree(tree, rotors);
+        }
+    }
+
+    @Test
+    public void testFits() {
+        RotorTree tree = new RotorTree(26, 37);
+        assertTrue(tree.fits(26, 37));
+        assertFalse(tree.fits(26, 38));
+        assertFalse(tree.fits(27, 37));
+    }
+}
@@ -0,0 +1,43 @@
+package enigma;
+
+import java.util.Scanner;
+
+/** Input lines read through a Scanner.
+ *  @author Ria Vora
+ */
+class ScannerLines implements InputLines {
+
+    /** The lines read by INPUT. */
+    ScannerLines(Scanner input) {
+        _input = input;
+    }
+
+    @Override
+    public boolean hasNextLine() {
+        return _input.hasNextLine();
+    }
+
+    @Override
+    public String nextLine() {
+        return _input.nextLine();
+    }
+
+    @Override
+    public boolean atSettings() {
+        return _input.hasNext("[\\*]");
+    }
+
+    @Override
+    public boolean atMessage() {
+        return _input.hasNext("[^\\*]+");
+    }
+
+    @Override
+    public void close() {
+        _input.close();
+    }
+
+    /** Source of the lines. */
+    private final Scanner _input;
+
+}
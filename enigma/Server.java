@@ -0,0 +1,280 @@
+package enigma;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import enigma.SessionWorker.Session;
+
+import static enigma.EnigmaException.*;
+
+/** A long-running server that reads its configuration files once and
+ *  then converts messages sent to it over a local socket, either a TCP
+ *  port on the loopback address or a Unix domain socket.
+ *
+ *  Every field of the protocol is a string, sent as its length in
+ *  bytes (a big-endian int) followed by its UTF-8 bytes. A request is
+ *  three fields: the name of a configuration file as given to the
+ *  server, a settings line, and a message, whose lines are converted as
+ *  Main converts the message lines after a settings line. The reply is
+ *  a status byte, OK or FAILED, followed by one field: the converted
+ *  lines in groups of five, or the error message. A connection may
+ *  carry any number of requests, which are answered in order.
+ *
+ *  Each connection is handled by a thread of its own, with machines of
+ *  its own on the specs of the configurations, made the first time it
+ *  uses them.
+ *  The work done with each configuration is counted in its Metrics.
+ *  @author Ria Vora
+ */
+class Server {
+
+    /** A server listening on ADDRESS, a port number or the path of a Unix
+     *  domain socket, for requests using the configuration files named
+     *  CONFIGS. Port 0 listens on any free port. */
+    Server(String address, String... configs) {
+        _configs = new HashMap<String, MachineSpec>();
+        for (String name : configs) {
+            byte[] config;
+            try {
+                config = Files.readAllBytes(Path.of(name));
+            } catch (IOException | InvalidPathException excp) {
+                throw error("could not open %s", name);
+            }
+            _configs.put(name, Main.readSpec(config));
+        }
+        try {
+            if (isPort(address)) {
+                _channel = ServerSocketChannel.open();
+                _channel.bind(new InetSocketAddress(
+                        InetAddress.getLoopbackAddress(),
+                        Integer.parseInt(address)));
+            } else {
+                _channel = ServerSocketChannel.open(
+                        StandardProtocolFamily.UNIX);
+                _channel.bind(UnixDomainSocketAddress.of(address));
+                _socketPath = Path.of(address);
+            }
+        } catch (IOException | IllegalArgumentException excp) {
+            throw error("could not listen on %s", address);
+        }
+        _pool = Executors.newCachedThreadPool(task -> {
+            Thread thread = new Thread(task, "enigma-connection");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /** Return the TCP port I listen on, or -1 if I listen on a Unix
+     *  domain socket. */
+    int port() {
+        if (_socketPath != null) {
+            return -1;
+        }
+        try {
+            return ((InetSocketAddress) _channel.getLocalAddress()).getPort();
+        } catch (IOException excp) {
+            return -1;
+        }
+    }
+
+    /** Accept connections and answer their requests until closed. */
+    void serve() {
+        while (true) {
+            SocketChannel connection;
+            try {
+                connection = _channel.accept();
+            } catch (ClosedChannelException excp) {
+                return;
+            } catch (IOException excp) {
+                throw error("could not accept a connection");
+            }
+            try {
+                _pool.execute(() -> handle(connection));
+            } catch (RejectedExecutionException excp) {
+                try {
+                    connection.close();
+                } catch (IOException closing) {
+                    /* Closed anyway. */
+                }
+                return;
+            }
+        }
+    }
+
+    /** Stop accepting connections and end those that are open. */
+    void close() {
+        try {
+            _channel.close();
+            if (_socketPath != null) {
+                Files.deleteIfExists(_socketPath);
+            }
+        } catch (IOException excp) {
+            /* Nothing more to release. */
+        }
+        _pool.shutdownNow();
+    }
+
+    /** Answer the requests on CONNECTION until it is closed. */
+    private void handle(SocketChannel connection) {
+        HashMap<String, SessionWorker> workers = new HashMap<>();
+        try (connection) {
+            if (_socketPath == null) {
+                connection.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            }
+            DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    Channels.newInputStream(connection), BUFFER_SIZE));
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(
+                            Channels.newOutputStream(connection),
+                            BUFFER_SIZE));
+            while (true) {
+                String config = readField(in);
+                if (config == null) {
+                    return;
+                }
+                String settings = readField(in);
+                String message = readField(in);
+                if (settings == null || message == null) {
+                    return;
+                }
+                answer(workers, config, settings, message, out);
+                out.flush();
+            }
+        } catch (IOException | EnigmaException excp) {
+            /* The connection is broken or malformed; drop it. */
+        }
+    }
+
+    /** Write to OUT the reply to the request to convert MESSAGE with the
+     *  configuration named CONFIG set up by SETTINGS, using and adding to
+     *  WORKERS, the workers of the connection by configuration name. */
+    private void answer(HashMap<String, SessionWorker> workers,
+                        String config, String settings, String message,
+                        DataOutputStream out) throws IOException {
+        SessionWorker worker = workers.get(config);
+        if (worker == null) {
+            MachineSpec spec = _configs.get(config);
+            if (spec == null) {
+                out.writeByte(FAILED);
+                writeField(out, "no configuration named " + config);
+                return;
+            }
+            Machine machine = new Machine(spec);
+            machine.setMetrics(Metrics.forConfig(config));
+            worker = new SessionWorker(machine);
+            workers.put(config, worker);
+        }
+        Session session = new Session();
+        session.settings = settings;
+        int start = 0;
+        while (start < message.length()) {
+            int end = message.indexOf('\n', start);
+            if (end < 0) {
+                end = message.length();
+            }
+            int lineEnd = end;
+            if (lineEnd > start && message.charAt(lineEnd - 1) == '\r') {
+                lineEnd -= 1;
+            }
+            session.lines.add(message.substring(start, lineEnd));
+            start = end + 1;
+        }
+        worker.run(session);
+        if (session.error != null) {
+            String reason = session.error.getMessage();
+            out.writeByte(FAILED);
+            writeField(out, reason != null ? reason
+                    : String.valueOf(session.error));
+        } else {
+            out.writeByte(OK);
+            writeField(out, new String(session.output,
+                    Charset.defaultCharset()));
+        }
+    }
+
+    /** Return true iff ADDRESS is a port number rather than a path. */
+    private static boolean isPort(String address) {
+        if (address.isEmpty() || address.length() > 5) {
+            return false;
+        }
+        for (int i = 0; i < address.length(); i++) {
+            if (address.charAt(i) < '0' || address.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Writes S to OUT as one field of the protocol. */
+    static void writeField(DataOutputStream out, String s)
+        throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /** Return the next field of the protocol from IN, or null if IN ends
+     *  before it. */
+    static String readField(DataInputStream in) throws IOException {
+        int length;
+        try {
+            length = in.readInt();
+        } catch (EOFException excp) {
+            return null;
+        }
+        if (length < 0 || length > MAX_FIELD) {
+            throw error("field of %d bytes is too long", length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** Status of a reply holding converted lines. */
+    static final byte OK = 0;
+
+    /** Status of a reply holding an error message. */
+    static final byte FAILED = 1;
+
+    /** Longest field accepted, in bytes. */
+    private static final int MAX_FIELD = 1 << 26;
+
+    /** Size of the buffers of each connection. */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** The spec read from each configuration file, by the name it was
+     *  given to me with. */
+    private final HashMap<String, MachineSpec> _configs;
+
+    /** The channel on which I accept connections. */
+    private final ServerSocketChannel _channel;
+
+    /** The path of my Unix domain socket, or null if I listen on a TCP
+     *  port. */
+    private Path _socketPath;
+
+    /** The threads handling connections. */
+    private final ExecutorService _pool;
+}
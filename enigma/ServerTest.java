@@ -0,0 +1,194 @@
+package enigma;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the Server class, which drive it
+ *  through a loopback client.
+ *  @author Ria Vora
+ */
+public class ServerTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** A small configuration with one rotor of each kind. */
+    private static final String CONFIG = "ABCD\n 3 1\n"
+            + " R R (AB)(CD)\n F N\t(ABC)\n M MAC (AD) (B)\n"
+            + "    (C)\n";
+
+    /** Line separator of the grouped output. */
+    private static final String NL = System.lineSeparator();
+
+    /** Returns the name of a temporary file holding CONFIG. */
+    private String configFile() throws IOException {
+        File file = File.createTempFile("enigma", ".conf");
+        file.deleteOnExit();
+        Files.write(file.toPath(), CONFIG.getBytes());
+        return file.getPath();
+    }
+
+    /** Starts SERVER on a thread of its own. */
+    private void start(Server server) {
+        Thread thread = new Thread(server::serve);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /** A loopback client connected to a server. */
+    private static class Client implements AutoCloseable {
+
+        /** A client connected to ADDRESS. */
+        Client(SocketAddress address) throws IOException {
+            _channel = SocketChannel.open(address);
+            _in = new DataInputStream(Channels.newInputStream(_channel));
+            _out = new DataOutputStream(Channels.newOutputStream(_channel));
+        }
+
+        /** Returns the reply to a request to convert MESSAGE with
+         *  configuration CONFIG set up by SETTINGS, prefixed by "ok: "
+         *  or "failed: ". */
+        String request(String config, String settings, String message)
+            throws IOException {
+            Server.writeField(_out, config);
+            Server.writeField(_out, settings);
+            Server.writeField(_out, message);
+            _out.flush();
+            byte status = _in.readByte();
+            String reply = Server.readField(_in);
+            return (status == Server.OK ? "ok: " : "failed: ") + reply;
+        }
+
+        @Override
+        public void close() throws IOException {
+            _channel.close();
+        }
+
+        /** The connection. */
+        private final SocketChannel _channel;
+        /** Replies from the server. */
+        private final DataInputStream _in;
+        /** Requests to the server. */
+        private final DataOutputStream _out;
+    }
+
+    /** Returns the conversion of MESSAGE, a single line, by a machine
+     *  configured from CONFIG and set up by SETTINGS, in groups. */
+    private String expected(String settings, String message) {
+        Machine machine = Main.readConfig(CONFIG.getBytes());
+        new SettingsParser(machine).apply(settings);
+        String converted = machine.convert(message);
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < converted.length(); i += 5) {
+            result.append(converted, i, Math.min(i + 5, converted.length()));
+            result.append(' ');
+        }
+        return result.append(NL).toString();
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testLoopback() throws IOException {
+        String config = configFile();
+        Server server = new Server("0", config);
+        start(server);
+        try (Client client = new Client(new InetSocketAddress(
+                InetAddress.getLoopbackAddress(), server.port()))) {
+            assertEquals("ok: " + expected("* R F M AB", "ABCDDCBAAB"),
+                    client.request(config, "* R F M AB", "ABCDD CBAAB"));
+            String twoLines = client.request(config, "* R F M AA",
+                    "AB\r\n\nCD\n");
+            Machine machine = Main.readConfig(CONFIG.getBytes());
+            new SettingsParser(machine).apply("* R F M AA");
+            String ab = machine.convert("AB");
+            String cd = machine.convert("CD");
+            assertEquals("ok: " + ab + " " + NL + NL + cd + " " + NL,
+                    twoLines);
+            assertTrue(client.request(config, "* R F M AE", "AB")
+                    .startsWith("failed: "));
+            assertEquals("failed: no configuration named nowhere",
+                    client.request("nowhere", "* R F M AA", "AB"));
+            assertEquals("ok: " + expected("* R F M AB", "ABCDDCBAAB"),
+                    client.request(config, "* R F M AB", "ABCDD CBAAB"));
+        } finally {
+            server.close();
+        }
+    }
+
+    @Test
+    public void testUnixSocket() throws IOException {
+        String config = configFile();
+        File socket = File.createTempFile("enigma", ".sock");
+        socket.delete();
+        Server server = new Server(socket.getPath(), config);
+        start(server);
+        try (Client client = new Client(
+                UnixDomainSocketAddress.of(socket.getPath()))) {
+            assertEquals(-1, server.port());
+            assertEquals("ok: " + expected("* R F M AD", "CAB"),
+                    client.request(config, "* R F M AD", "CAB"));
+        } finally {
+            server.close();
+        }
+        assertFalse(socket.exists());
+    }
+
+    @Test
+    public void testConfigReadOnce() throws IOException {
+        String config = configFile();
+        Server server = new Server("0", config);
+        new File(config).delete();
+        start(server);
+        String reply = "ok: " + expected("* R F M AB", "ABCD");
+        Path events = Files.createTempFile("enigma", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("enigma.ConfigLoad");
+            recording.start();
+            for (int i = 0; i < 5; i++) {
+                try (Client client = new Client(new InetSocketAddress(
+                        InetAddress.getLoopbackAddress(), server.port()))) {
+                    assertEquals(reply,
+                            client.request(config, "* R F M AB", "ABCD"));
+                }
+            }
+            recording.stop();
+            recording.dump(events);
+            for (RecordedEvent event : RecordingFile.readAllEvents(events)) {
+                assertNotEquals("enigma.ConfigLoad",
+                        event.getEventType().getName());
+            }
+        } finally {
+            server.close();
+            Files.deleteIfExists(events);
+        }
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testMissingConfig() {
+        new Server("0", "/nonexistent/enigma.conf");
+    }
+
+}
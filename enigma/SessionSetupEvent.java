@@ -0,0 +1,26 @@
+package enigma;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/** A flight recorder event for setting up a machine from a settings
+ *  line.
+ *  @author Ria Vora
+ */
+@Name("enigma.SessionSetup")
+@Label("Session Setup")
+@Category("Enigma")
+@Description("A machine set up from a settings line")
+class SessionSetupEvent extends Event {
+
+    /** Names of the rotors inserted, from the reflector on. */
+    @Label("Rotors")
+    String rotors;
+
+    /** Number of cycles in the plugboard. */
+    @Label("Plugboard Size")
+    int plugboardSize;
+}
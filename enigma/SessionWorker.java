@@ -0,0 +1,121 @@
+package enigma;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+
+/** A machine with everything needed to set it up from settings lines,
+ *  convert message lines with it and write them in groups of five.
+ *  @author Ria Vora
+ */
+class SessionWorker {
+
+    /** A worker converting with MACHINE and writing to OUTPUT. */
+    SessionWorker(Machine machine, GroupedWriter output) {
+        _machine = machine;
+        _parser = new SettingsParser(machine);
+        _out = output;
+    }
+
+    /** A worker converting with MACHINE and writing to a buffer of its
+     *  own, for run. */
+    SessionWorker(Machine machine) {
+        this(machine, null);
+        _bytes = new ByteArrayOutputStream();
+        _out = new GroupedWriter(_bytes, false);
+    }
+
+    /** Return my machine. */
+    Machine machine() {
+        return _machine;
+    }
+
+    /** Set my machine according to SETTINGS. */
+    void setUp(String settings) {
+        _parser.apply(settings);
+    }
+
+    /** Print the characters of LINE other than spaces, converted by
+     *  my machine, in groups of five (except that the last group may
+     *  have fewer letters). */
+    void printMessageLine(String line) {
+        ConversionEvent event = new ConversionEvent();
+        event.begin();
+        if (_message.length < line.length()) {
+            _message = new char[Math.max(line.length(),
+                    2 * _message.length)];
+        }
+        int length = 0;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c != ' ') {
+                _message[length] = c;
+                length += 1;
+            }
+        }
+        _machine.convert(_message, 0, length, _message, 0);
+        _out.writeLine(_message, 0, length);
+        if (event.shouldCommit()) {
+            event.characters = length;
+            event.commit();
+        }
+    }
+
+    /** Convert SESSION as Main would, recording its output and any
+     *  error that ends it, and return it. If SESSION has no settings
+     *  line, it continues from the current state of my machine. Only
+     *  for a worker with a buffer of its own. */
+    Session run(Session session) {
+        try {
+            for (int i = 0; i < session.blankLines; i += 1) {
+                _out.newLine();
+            }
+            if (session.settings != null) {
+                setUp(session.settings);
+            }
+            for (String line : session.lines) {
+                printMessageLine(line);
+            }
+        } catch (RuntimeException excp) {
+            session.error = excp;
+        } finally {
+            _out.flush();
+            session.output = _bytes.toByteArray();
+            _bytes.reset();
+        }
+        return session;
+    }
+
+    /** The settings line of a session, the message lines that follow it
+     *  and, once converted, its output. */
+    static class Session {
+        /** Number of blank lines before the settings line. */
+        int blankLines;
+        /** The settings line, or null if the message lines continue an
+         *  earlier session. */
+        String settings;
+        /** The message lines. */
+        final ArrayList<String> lines = new ArrayList<>();
+        /** The converted output, in the bytes written by a GroupedWriter. */
+        byte[] output;
+        /** The error that ended the session early, if any. */
+        RuntimeException error;
+        /** The state of the machine after converting the session
+         *  without error, for converting lines that continue it. */
+        MachineState end;
+    }
+
+    /** My machine. */
+    private final Machine _machine;
+
+    /** Parser of the settings lines for my machine. */
+    private final SettingsParser _parser;
+
+    /** Where I write converted lines. */
+    private GroupedWriter _out;
+
+    /** The buffer behind _out, when I have one of my own. */
+    private ByteArrayOutputStream _bytes;
+
+    /** Reusable buffer for the characters of a message line. */
+    private char[] _message = new char[256];
+}
@@ -0,0 +1,141 @@
+package enigma;
+
+import java.util.ArrayList;
+
+/** A parser of settings lines, such as "* B Beta III IV I AXLE (HQ) (EX)",
+ *  that sets up a machine in one pass over the line, without regular
+ *  expressions. After the "*" come the names of the rotors, starting
+ *  with the reflector, then the setting of the rotors, and then the
+ *  cycles of the plugboard. Tokens are separated by spaces.
+ *  @author Ria Vora
+ */
+class SettingsParser {
+
+    /** A parser of settings lines for MACHINE. */
+    SettingsParser(Machine machine) {
+        _machine = machine;
+        _cycles = new ArrayList<char[]>();
+    }
+
+    /** Set my machine according to the settings on LINE, counting it
+     *  in the metrics of my machine, if any. */
+    void apply(String line) {
+        Metrics metrics = _machine.metrics();
+        if (metrics == null) {
+            applySettings(line);
+            return;
+        }
+        try {
+            applySettings(line);
+        } catch (EnigmaException excp) {
+            metrics.settingsFailure();
+            throw excp;
+        }
+        metrics.session();
+    }
+
+    /** Set my machine according to the settings on LINE. */
+    private void applySettings(String line) {
+        SessionSetupEvent event = new SessionSetupEvent();
+        event.begin();
+        if (line.isEmpty() || line.charAt(0) != '*') {
+            throw new EnigmaException("You did not "
+                    + "start your input with a *!");
+        }
+        int numRotors = _machine.numRotors();
+        String[] rotors = new String[numRotors];
+        _cycles.clear();
+        int index = -1;
+        int end = 0;
+        while (true) {
+            int start = end;
+            while (start < line.length() && line.charAt(start) == ' ') {
+                start += 1;
+            }
+            if (start == line.length()) {
+                break;
+            }
+            end = start;
+            while (end < line.length() && line.charAt(end) != ' ') {
+                end += 1;
+            }
+            if (index == -1) {
+                checkStar(line, start, end);
+            } else if (index < numRotors) {
+                rotors[index] = rotorName(line, start, end);
+            } else if (index == numRotors) {
+                setRotors(rotors, line.substring(start, end));
+            } else if (Permutation.cycleEnd(line, start, end) == end) {
+                _cycles.add(line.substring(start + 1, end - 1).toCharArray());
+            }
+            index += 1;
+        }
+        if (index <= numRotors) {
+            throw new EnigmaException("You do not have "
+                    + "the correct numnber of rotors!");
+        }
+        _machine.setPlugboard(new Permutation(
+                _cycles.toArray(new char[_cycles.size()][]),
+                _machine.alphabet()));
+        if (event.shouldCommit()) {
+            event.rotors = String.join(" ", rotors);
+            event.plugboardSize = _cycles.size();
+            event.commit();
+        }
+    }
+
+    /** Checks that LINE[START..END) is "*".
+     * @param line is the settings line
+     * @param start is the start of the token
+     * @param end is the end of the token*/
+    private void checkStar(String line, int start, int end) {
+        if (end - start != 1) {
+            throw new EnigmaException(line.substring(start, end)
+                    + " is not a rotor that you "
+                    + "passed in to all Rotors!");
+        }
+    }
+
+    /** Return LINE[START..END), checking that it names one of the
+     * rotors of my machine.
+     * @param line is the settings line
+     * @param start is the start of the token
+     * @param end is the end of the token*/
+    private String rotorName(String line, int start, int end) {
+        String name = line.substring(start, end);
+        if (!_machine.hasRotor(name)) {
+            throw new EnigmaException(name
+                    + " is not a rotor that you "
+                    + "passed in to all Rotors!");
+        }
+        for (int i = start; i < end; i++) {
+            char c = line.charAt(i);
+            if (c == '*' || c == '(' || c == ')') {
+                throw new EnigmaException("Your input for the name "
+                        + " of the rotor is " + name
+                        + ", which is not allowed!");
+            }
+        }
+        return name;
+    }
+
+    /** Inserts ROTORS into my machine and sets them to SETTING.
+     * @param rotors holds the names of each of the rotors
+     * @param setting is the setting of the rotors*/
+    private void setRotors(String[] rotors, String setting) {
+        if (_machine.hasRotor(setting)) {
+            throw new EnigmaException("That is too many"
+                    + " rotors! You are only "
+                    + "supposed to have " + rotors.length + " rotors");
+        }
+        _machine.insertRotors(rotors);
+        _machine.setRotors(setting);
+    }
+
+    /** The machine being set up. */
+    private final Machine _machine;
+
+    /** The plugboard cycles of the line being parsed. */
+    private final ArrayList<char[]> _cycles;
+
+}
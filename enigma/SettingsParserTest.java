@@ -0,0 +1,74 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the SettingsParser class.
+ *  @author Ria Vora
+ */
+public class SettingsParserTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Returns a 5-rotor, 3-pawl machine with some of the naval
+     *  rotors. */
+    private Machine navalMachine() {
+        ArrayList<Rotor> rotors = new ArrayList<Rotor>();
+        rotors.add(new Reflector("B", new Permutation(NAVALA.get("B"),
+                UPPER)));
+        rotors.add(new FixedRotor("Beta", new Permutation(NAVALA.get("Beta"),
+                UPPER)));
+        rotors.add(new MovingRotor("I", new Permutation(NAVALA.get("I"),
+                UPPER), "Q"));
+        rotors.add(new MovingRotor("III", new Permutation(NAVALA.get("III"),
+                UPPER), "V"));
+        rotors.add(new MovingRotor("IV", new Permutation(NAVALA.get("IV"),
+                UPPER), "J"));
+        return new Machine(UPPER, 5, 3, rotors);
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testApply() {
+        Machine machine = navalMachine();
+        SettingsParser parser = new SettingsParser(machine);
+        parser.apply("*  B Beta III IV  I AXLE (YF) (ZH) junk (AB)(CD)");
+        assertEquals("AAXLE", machine.rowOfRotors());
+        assertEquals("Z", machine.convert("Y"));
+        parser.apply("* B Beta I IV III AAAA");
+        assertEquals("AAAAA", machine.rowOfRotors());
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testMissingSetting() {
+        new SettingsParser(navalMachine()).apply("* B Beta III IV I");
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testTooManyRotors() {
+        new SettingsParser(navalMachine()).apply("* B Beta III IV I I AXLE");
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testNoStar() {
+        new SettingsParser(navalMachine()).apply("B Beta III IV I AXLE");
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testBadPlugboard() {
+        new SettingsParser(navalMachine()).apply(
+                "* B Beta III IV I AXLE (AB) (BC)");
+    }
+
+}
@@ -0,0 +1,344 @@
+package enigma;
+
+import java.util.Arrays;
+
+/** The times at which the moving rotors of a machine step, starting
+ *  from given settings. Each rotor only depends on itself and the
+ *  rotors to its right, and the rightmost rotor steps on every key
+ *  press, so the steps of each rotor form an eventually periodic
+ *  sequence that can be found from the one of its right neighbor.
+ *  This gives the setting of any rotor after any number of key
+ *  presses without stepping through them. A rotor that is at a notch
+ *  in every setting, such as one with no notches, steps on every key
+ *  press unless it is the leftmost, so it needs no simulation.
+ *  Schedules that would keep more than MAX_TIMES step and notch times
+ *  are refused.
+ *  @author Ria Vora
+ */
+class StepSchedule {
+
+    /** A schedule for the moving rotors ROTORS, listed from left to
+     *  right, whose settings before the first key press are SETTINGS.
+     *  Throws an EnigmaException if the schedule is too large to keep. */
+    StepSchedule(Rotor[] rotors, int[] settings) {
+        _starts = settings.clone();
+        _sizes = new int[rotors.length];
+        _steps = new Times[rotors.length];
+        Times trigger = ALWAYS;
+        for (int i = rotors.length - 1; i >= 0; i--) {
+            trigger = schedule(i, rotors[i], trigger);
+        }
+    }
+
+    /** Return the setting of the Ith moving rotor from the left after N
+     *  key presses. */
+    int setting(int i, long n) {
+        int size = _sizes[i];
+        long steps = _steps[i].count(n) % size;
+        return (int) ((_starts[i] + steps) % size);
+    }
+
+    /** Return the number of moving rotors in this schedule. */
+    int size() {
+        return _steps.length;
+    }
+
+    /** Records the steps of ROTOR, the Ith moving rotor, when the rotor
+     *  to its right is at a notch at the times in TRIGGER.
+     *  @return the times at which ROTOR is at a notch */
+    private Times schedule(int i, Rotor rotor, Times trigger) {
+        int size = rotor.size();
+        _sizes[i] = size;
+        if (alwaysNotched(rotor) && (i > 0 || trigger == ALWAYS)) {
+            _steps[i] = ALWAYS;
+            return ALWAYS;
+        }
+        Simulation sim = new Simulation(rotor, _starts[i], i > 0, trigger,
+                MAX_TIMES - _stored);
+        sim.runUntil(trigger.tail());
+
+        int[] seen = new int[size];
+        Arrays.fill(seen, -1);
+        int[] stepMarks = new int[size + 1];
+        int[] notchMarks = new int[size + 1];
+        int periods = 0;
+        while (seen[sim.setting()] == -1) {
+            seen[sim.setting()] = periods;
+            stepMarks[periods] = sim.steps().size();
+            notchMarks[periods] = sim.notches().size();
+            periods += 1;
+            sim.runUntil(add(trigger.tail(),
+                    multiply(periods, trigger.period())));
+        }
+        stepMarks[periods] = sim.steps().size();
+        notchMarks[periods] = sim.notches().size();
+
+        int first = seen[sim.setting()];
+        long tail = add(trigger.tail(), multiply(first, trigger.period()));
+        long period = multiply(periods - first, trigger.period());
+        _steps[i] = new Times(tail, period, sim.steps(),
+                stepMarks[first], stepMarks[periods]);
+        _stored += sim.steps().size() + sim.notches().size();
+        return new Times(tail, period, sim.notches(),
+                notchMarks[first], notchMarks[periods]);
+    }
+
+    /** Return true iff ROTOR is at a notch in every setting. */
+    private static boolean alwaysNotched(Rotor rotor) {
+        for (int k = 0; k < rotor.size(); k++) {
+            if (!rotor.notchAt(k)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Return an error saying that the schedule is too large. */
+    private static EnigmaException tooLong() {
+        return new EnigmaException("The stepping period of the rotors"
+                + " is too long to seek in");
+    }
+
+    /** Return A + B, reporting an error on overflow. */
+    private static long add(long a, long b) {
+        try {
+            return Math.addExact(a, b);
+        } catch (ArithmeticException excp) {
+            throw tooLong();
+        }
+    }
+
+    /** Return A * B, reporting an error on overflow. */
+    private static long multiply(long a, long b) {
+        try {
+            return Math.multiplyExact(a, b);
+        } catch (ArithmeticException excp) {
+            throw tooLong();
+        }
+    }
+
+    /** Returns the number of elements of the sorted array TIMES between
+     *  FROM and TO that are less than T. */
+    private static int countBelow(long[] times, int from, int to, long t) {
+        int lo = from, hi = to;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (times[mid] < t) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo - from;
+    }
+
+    /** An eventually periodic set of times: an arbitrary set of times
+     *  before tail(), and from then on the same times in every interval
+     *  of period() presses. */
+    private static class Times {
+
+        /** The times in LIST[FROM..TO) form the first period, starting at
+         *  TAIL and lasting PERIOD, and those in LIST[0..FROM) come before
+         *  it. */
+        Times(long tail, long period, LongList list, int from, int to) {
+            _tail = tail;
+            _period = period;
+            _tailTimes = list.toArray(0, from);
+            _periodTimes = list.toArray(from, to);
+            for (int i = 0; i < _periodTimes.length; i++) {
+                _periodTimes[i] -= tail;
+            }
+        }
+
+        /** Return the time at which the repetition starts. */
+        long tail() {
+            return _tail;
+        }
+
+        /** Return the length of each repetition. */
+        long period() {
+            return _period;
+        }
+
+        /** Return the first of my times that is at least T, or
+         *  Long.MAX_VALUE if there is none. */
+        long next(long t) {
+            if (t < _tail) {
+                int j = countBelow(_tailTimes, 0, _tailTimes.length, t);
+                if (j < _tailTimes.length) {
+                    return _tailTimes[j];
+                }
+                t = _tail;
+            }
+            if (_periodTimes.length == 0) {
+                return Long.MAX_VALUE;
+            }
+            long q = (t - _tail) / _period, r = (t - _tail) % _period;
+            int j = countBelow(_periodTimes, 0, _periodTimes.length, r);
+            if (j == _periodTimes.length) {
+                q += 1;
+                j = 0;
+            }
+            return _tail + q * _period + _periodTimes[j];
+        }
+
+        /** Return the number of my times that are less than N. */
+        long count(long n) {
+            if (n <= _tail) {
+                return countBelow(_tailTimes, 0, _tailTimes.length, n);
+            }
+            long q = (n - _tail) / _period, r = (n - _tail) % _period;
+            return _tailTimes.length + q * _periodTimes.length
+                    + countBelow(_periodTimes, 0, _periodTimes.length, r);
+        }
+
+        /** Start of the repetition. */
+        private final long _tail;
+
+        /** Length of each repetition. */
+        private final long _period;
+
+        /** Sorted times before _tail. */
+        private final long[] _tailTimes;
+
+        /** Sorted offsets from the start of each repetition. */
+        private final long[] _periodTimes;
+    }
+
+    /** Key press by key press record of one rotor, skipping the presses
+     *  on which it does not move. */
+    private static class Simulation {
+
+        /** Simulates ROTOR from SETTING at time 0. It steps whenever the
+         *  rotor to its right is at a notch, at the times in TRIGGER, and
+         *  also whenever it is at a notch itself if SELFNOTCH. It keeps
+         *  at most LIMIT step and notch times in all. */
+        Simulation(Rotor rotor, int setting, boolean selfNotch,
+                   Times trigger, int limit) {
+            _rotor = rotor;
+            _setting = setting;
+            _selfNotch = selfNotch;
+            _trigger = trigger;
+            _limit = limit;
+        }
+
+        /** Simulates all key presses before time END, reporting an error
+         *  if that needs more times than my limit. */
+        void runUntil(long end) {
+            while (true) {
+                boolean notch = _rotor.notchAt(_setting);
+                long step = _selfNotch && notch ? _time : _trigger.next(_time);
+                if (step >= end) {
+                    break;
+                }
+                if (_steps.size() + _notches.size() >= _limit) {
+                    throw tooLong();
+                }
+                _steps.add(step);
+                if (notch) {
+                    _notches.add(step);
+                }
+                _setting = (_setting + 1) % _rotor.size();
+                _time = step + 1;
+            }
+            _time = end;
+        }
+
+        /** Return the setting of my rotor at the current time. */
+        int setting() {
+            return _setting;
+        }
+
+        /** Return the times at which my rotor has stepped. */
+        LongList steps() {
+            return _steps;
+        }
+
+        /** Return the times at which my rotor stepped while at a
+         *  notch. */
+        LongList notches() {
+            return _notches;
+        }
+
+        /** The rotor being simulated. */
+        private final Rotor _rotor;
+
+        /** Whether the rotor steps when at its own notch. */
+        private final boolean _selfNotch;
+
+        /** Times at which the rotor to the right is at a notch. */
+        private final Times _trigger;
+
+        /** The greatest number of step and notch times to keep. */
+        private final int _limit;
+
+        /** The current setting of the rotor. */
+        private int _setting;
+
+        /** The number of key presses simulated so far. */
+        private long _time;
+
+        /** Times of the steps so far. */
+        private final LongList _steps = new LongList();
+
+        /** Times of the steps so far taken from a notch. */
+        private final LongList _notches = new LongList();
+    }
+
+    /** A growable list of longs. */
+    private static class LongList {
+
+        /** Appends X. */
+        void add(long x) {
+            if (_size == _items.length) {
+                _items = Arrays.copyOf(_items, 2 * _size);
+            }
+            _items[_size] = x;
+            _size += 1;
+        }
+
+        /** Return the number of items. */
+        int size() {
+            return _size;
+        }
+
+        /** Return a copy of items FROM..TO-1. */
+        long[] toArray(int from, int to) {
+            return Arrays.copyOfRange(_items, from, to);
+        }
+
+        /** The items, followed by unused space. */
+        private long[] _items = new long[8];
+
+        /** The number of items. */
+        private int _size;
+    }
+
+    /** The greatest number of step and notch times a schedule keeps
+     *  while it is built. */
+    static final int MAX_TIMES = 1 << 21;
+
+    /** The times of a rotor that steps on every key press. */
+    private static final Times ALWAYS = new Times(0, 1, oneZero(), 0, 1);
+
+    /** Return a list holding just 0. */
+    private static LongList oneZero() {
+        LongList result = new LongList();
+        result.add(0);
+        return result;
+    }
+
+    /** The setting of each rotor before the first key press. */
+    private final int[] _starts;
+
+    /** Alphabet size of each rotor. */
+    private final int[] _sizes;
+
+    /** The times at which each rotor steps. */
+    private final Times[] _steps;
+
+    /** The number of step and notch times kept by the rotors scheduled
+     *  so far. */
+    private int _stored;
+
+}
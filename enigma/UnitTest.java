@@ -10,9 +10,15 @@ public class UnitTest {
     /** Run the JUnit tests in this package. Add xxxTest.class entries to
      *  the arguments of runClasses to run other JUnit tests. */
     public static void main(String[] ignored) {
-        System.exit(textui.runClasses(PermutationTest.class,
-                MovingRotorTest.class, FixedRotorTest.class,
-                MachineTest.class));
+        System.exit(textui.runClasses(AlphabetTest.class,
+                PermutationTest.class, MovingRotorTest.class,
+                FixedRotorTest.class, MachineTest.class,
+                MappedInputTest.class, ConfigReaderTest.class,
+                SettingsParserTest.class, GroupedWriterTest.class,
+                ConfigImageTest.class, MachineCursorTest.class,
+                ServerTest.class, ManifestTest.class,
+                FlightEventsTest.class, MetricsTest.class,
+                RotorTreeTest.class));
     }
 
 }